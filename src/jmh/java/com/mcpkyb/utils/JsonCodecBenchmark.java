@@ -0,0 +1,98 @@
+package com.mcpkyb.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.mcpkyb.mcp.model.McpMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared JsonCodec against the mapper-per-call code it replaced, on the payloads the request path
+ * handles: a KYB result map built from the bundled reference data and an MCP tools/call response.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private JsonCodec codec;
+    private Map<String, Object> result;
+    private String resultJson;
+    private String messageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = new JsonCodec(new ObjectMapper().registerModule(new BlackbirdModule()));
+
+        JsonNode customer = JsonLoader.loadJson("crm.json").path("customers").path(0);
+        String customerId = customer.path("customer_id").asText();
+        result = new LinkedHashMap<>();
+        result.put("customer_id", customerId);
+        result.put("journey_type", "LIMITED_COMPANY_MULTI");
+        result.put("entity_profile", codec.toMap(customer));
+        result.put("party_summary", codec.mapper().convertValue(
+                JsonLoader.loadJson("parties.json").path("customers").path(customerId), List.class));
+        result.put("transaction_insights", codec.mapper().convertValue(
+                JsonLoader.loadJson("transactions.json"), Object.class));
+        result.put("kyb_note", "The customer is a multi-party limited company with moderate transaction activity.");
+        result.put("recommended_actions", List.of("Confirm beneficial ownership", "Review cross-border payments"));
+        resultJson = codec.writeMap(result);
+
+        McpMessage message = new McpMessage();
+        message.setId("bench-1");
+        message.setResult(Map.of("structured", result));
+        messageJson = codec.writeMessage(message);
+    }
+
+    @Benchmark
+    public Map<String, Object> readResultNewMapperPerCall() throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = new ObjectMapper().readValue(resultJson, Map.class);
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, Object> readResultSharedCodec() throws IOException {
+        return codec.readMap(resultJson);
+    }
+
+    @Benchmark
+    public String writeResultNewMapperPerCall() throws IOException {
+        return new ObjectMapper().writeValueAsString(result);
+    }
+
+    @Benchmark
+    public String writeResultSharedCodec() throws IOException {
+        return codec.writeMap(result);
+    }
+
+    @Benchmark
+    public McpMessage readMessageNewMapperPerCall() throws IOException {
+        return new ObjectMapper().readValue(messageJson, McpMessage.class);
+    }
+
+    @Benchmark
+    public McpMessage readMessageSharedCodec() throws IOException {
+        return codec.readMessage(messageJson);
+    }
+}
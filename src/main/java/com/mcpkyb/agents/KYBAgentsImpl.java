@@ -1,10 +1,10 @@
 package com.mcpkyb.agents;
 
+import com.mcpkyb.rules.RulesRepository;
 import com.mcpkyb.service.CustomerProfileAgent;
 import com.mcpkyb.service.KYBNoteAgent;
 import com.mcpkyb.service.RiskComplianceAgent;
 import com.mcpkyb.service.TransactionPatternAgent;
-import com.mcpkyb.utils.JsonLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -21,6 +21,8 @@ public class KYBAgentsImpl implements KYBAgents {
     RiskComplianceAgent riskAgent;
     @Autowired
     KYBNoteAgent kybNoteAgent;
+    @Autowired
+    RulesRepository rulesRepository;
 
     @Override
     public String getCustomerProfile(String customerId) {
@@ -42,8 +44,8 @@ public class KYBAgentsImpl implements KYBAgents {
 
     @Override
     public String assessRisk(String profile, String txInsights) throws IOException {
-        //String rulesJson = JsonLoader.loadJson("rules.json").toString();
-        return riskAgent.assessRisk(profile, txInsights,JsonLoader.loadJson("rules.json"));
+        //String rulesJson = rulesRepository.current().raw().toString();
+        return riskAgent.assessRisk(profile, txInsights,rulesRepository.current().raw());
     }
 
     @Override
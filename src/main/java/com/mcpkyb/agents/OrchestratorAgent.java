@@ -1,11 +1,11 @@
 package com.mcpkyb.agents;
 
 
+import com.mcpkyb.rules.RulesRepository;
 import com.mcpkyb.service.CustomerProfileAgent;
 import com.mcpkyb.service.KYBNoteAgent;
 import com.mcpkyb.service.RiskComplianceAgent;
 import com.mcpkyb.service.TransactionPatternAgent;
-import com.mcpkyb.utils.JsonLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +18,7 @@ public class OrchestratorAgent {
     @Autowired private TransactionPatternAgent txAgent;
     @Autowired private RiskComplianceAgent riskAgent;
     @Autowired private KYBNoteAgent noteAgent;
+    @Autowired private RulesRepository rulesRepository;
 
 
     public String runKYB(String customerJson, String txJson, String rulesJson) throws IOException, IOException {
@@ -28,7 +29,7 @@ public class OrchestratorAgent {
         String transactions = txAgent.analyzeTransactions(txJson);
 
         // Step 3: Assess risk
-        String risk = riskAgent.assessRisk(profile, transactions, JsonLoader.loadJson("rules.json"));
+        String risk = riskAgent.assessRisk(profile, transactions, rulesRepository.current().raw());
 
         // Step 4: Generate KYB note
         String kybNote = noteAgent.generateKYBNote(profile, transactions, risk);
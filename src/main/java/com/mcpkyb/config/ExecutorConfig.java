@@ -0,0 +1,52 @@
+package com.mcpkyb.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    @Value("${kyb.executor.shutdown-grace:10s}")
+    private Duration shutdownGrace;
+
+    private ExecutorService kybStepExecutor;
+
+    /**
+     * Executor for KYB workflow steps. Steps spend almost all of their time blocked on LLM round trips,
+     * so each one gets its own virtual thread rather than competing for a fixed platform pool.
+     */
+    @Bean(destroyMethod = "")
+    public ExecutorService kybStepExecutor() {
+        kybStepExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        return kybStepExecutor;
+    }
+
+    /**
+     * Gives running steps kyb.executor.shutdown-grace to finish, then interrupts the rest. Calls
+     * abandoned after a step timeout may never return on their own, so waiting for every task as
+     * close() does could hold up shutdown indefinitely.
+     */
+    @PreDestroy
+    void shutdownStepExecutor() throws InterruptedException {
+        if (kybStepExecutor == null) {
+            return;
+        }
+        kybStepExecutor.shutdown();
+        if (!kybStepExecutor.awaitTermination(shutdownGrace.toMillis(), TimeUnit.MILLISECONDS)) {
+            int abandoned = kybStepExecutor.shutdownNow().size();
+            logger.warn("KYB step executor still busy after {}ms, interrupted running tasks ({} not started)",
+                    shutdownGrace.toMillis(), abandoned);
+        }
+    }
+}
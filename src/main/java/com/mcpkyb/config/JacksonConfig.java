@@ -0,0 +1,22 @@
+package com.mcpkyb.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Registered on the application ObjectMapper by Spring Boot. Replaces reflective getter/setter
+     * and constructor calls with generated lambdas, which matters for the records and beans on the
+     * request path (MCP messages, jobs, typed results).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kyb.json.blackbird.enabled", havingValue = "true", matchIfMissing = true)
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -1,20 +1,23 @@
 package com.mcpkyb.config;
 
+import com.mcpkyb.llm.MonitoringChatModelListener;
 import com.mcpkyb.service.LLMMonitoringService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Configuration for LLM observability.
- * Note: Automatic listener integration is disabled due to LangChain4j version compatibility.
- * LLM monitoring is available through manual service calls in agents.
+ * Every OpenAI model built in LangChainConfig reports to LLMMonitoringService through this
+ * listener, so token usage, cost and latency come from the provider's responses. Agents only name
+ * themselves with LLMMonitoringService.callAs.
  */
 @Configuration
 public class LLMObservabilityConfig {
 
-    private static final Logger logger = LoggerFactory.getLogger(LLMObservabilityConfig.class);
-
-    // LLM monitoring service is available as a bean for manual usage in agents
-    // Automatic listener integration removed due to interface compatibility issues
+    @Bean
+    public MonitoringChatModelListener monitoringChatModelListener(LLMMonitoringService llmMonitoringService,
+                                                                   @Value("${openai.model.name}") String modelName) {
+        return new MonitoringChatModelListener(llmMonitoringService, modelName);
+    }
 }
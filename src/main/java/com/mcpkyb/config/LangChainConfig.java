@@ -1,13 +1,30 @@
 package com.mcpkyb.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.llm.AdaptiveConcurrencyLimiter;
+import com.mcpkyb.llm.CachingChatModel;
+import com.mcpkyb.llm.ConcurrencyLimitedChatModel;
+import com.mcpkyb.llm.ConcurrencyLimitedStreamingChatModel;
+import com.mcpkyb.llm.MonitoringChatModelListener;
+import com.mcpkyb.service.LLMMonitoringService;
 import com.mcpkyb.service.LangSmithListener;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 @Configuration
@@ -19,14 +36,43 @@ public class LangChainConfig {
     @Value("${openai.model.name}")
     private String modelName;
 
+    @Value("${llm.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${llm.cache.ttl:24h}")
+    private Duration cacheTtl;
+
+    @Value("${llm.cache.max-weight:20000000}")
+    private long cacheMaxWeight;
+
+    @Value("${llm.cache.disk.directory:}")
+    private String cacheDiskDirectory;
+
     @Autowired(required = false)
     private LangSmithListener langSmithListener;
 
+    @Autowired
+    private MonitoringChatModelListener monitoringChatModelListener;
+
+    @Autowired
+    private LLMMonitoringService llmMonitoringService;
+
     @Bean
     public OpenAiChatModel openAiChatModel() {
-        OpenAiChatModel.OpenAiChatModelBuilder builder = OpenAiChatModel.builder()
+        return OpenAiChatModel.builder()
                 .apiKey(apiKey)
-                .modelName(modelName);
+                .modelName(modelName)
+                .listeners(listeners())
+                .build();
+    }
+
+    /**
+     * Listeners for every OpenAI model: token and latency accounting, plus LangSmith tracing when
+     * it is available.
+     */
+    private List<ChatModelListener> listeners() {
+        List<ChatModelListener> listeners = new ArrayList<>();
+        listeners.add(monitoringChatModelListener);
 
         // Add LangSmith listener if available
         if (langSmithListener != null) {
@@ -37,7 +83,7 @@ public class LangChainConfig {
 
                 if (wrappedListener instanceof ChatModelListener) {
                     ChatModelListener listener = (ChatModelListener) wrappedListener;
-                    builder.listeners(List.of(listener));
+                    listeners.add(listener);
                 } else {
                     System.err.println("Wrapped LangSmith listener is not a ChatModelListener, skipping");
                 }
@@ -47,8 +93,65 @@ public class LangChainConfig {
             }
         }
 
-        return builder.build();
+        return listeners;
+    }
+
+    /**
+     * One concurrency limit for all OpenAI traffic, blocking and streaming, so a portfolio sweep
+     * backs off together when the provider starts returning 429s or slowing down.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "llm.limiter.enabled", havingValue = "true", matchIfMissing = true)
+    public AdaptiveConcurrencyLimiter openAiConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${llm.limiter.initial-limit:8}") int initialLimit,
+            @Value("${llm.limiter.min-limit:1}") int minLimit,
+            @Value("${llm.limiter.max-limit:64}") int maxLimit,
+            @Value("${llm.limiter.max-queue:500}") int maxQueue,
+            @Value("${llm.limiter.queue-timeout:120s}") Duration queueTimeout,
+            @Value("${llm.limiter.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${llm.limiter.backoff-ratio:0.9}") double backoffRatio) {
+        return new AdaptiveConcurrencyLimiter("openai", initialLimit, minLimit, maxLimit, maxQueue, queueTimeout,
+                latencyTolerance, backoffRatio, meterRegistry);
+    }
+
+    /**
+     * The ChatModel the agents use: the OpenAI model behind the shared concurrency limit and an
+     * exact-match response cache, so repeated prompts (re-assessments, load tests) don't pay for
+     * another round trip or take a slot.
+     */
+    @Bean
+    @Primary
+    public ChatModel chatModel(OpenAiChatModel openAiChatModel,
+                               ObjectProvider<AdaptiveConcurrencyLimiter> limiter,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter openAiLimiter = limiter.getIfAvailable();
+        ChatModel model = openAiLimiter != null
+                ? new ConcurrencyLimitedChatModel(openAiChatModel, openAiLimiter,
+                        llmMonitoringService::currentAgent, llmMonitoringService::currentBudget)
+                : openAiChatModel;
+        if (!cacheEnabled) {
+            return model;
+        }
+        Path diskDirectory = cacheDiskDirectory.isBlank() ? null : Path.of(cacheDiskDirectory);
+        return new CachingChatModel(model, modelName, cacheTtl, cacheMaxWeight, diskDirectory,
+                objectMapper, meterRegistry);
     }
-}
 
-    
\ No newline at end of file
+    /**
+     * Token-by-token variant of the OpenAI model, for the long narrative completions whose callers
+     * can show output before the whole response has arrived. Not cached.
+     */
+    @Bean
+    public StreamingChatModel streamingChatModel(ObjectProvider<AdaptiveConcurrencyLimiter> limiter) {
+        StreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(modelName)
+                .listeners(listeners())
+                .build();
+        AdaptiveConcurrencyLimiter openAiLimiter = limiter.getIfAvailable();
+        return openAiLimiter != null ? new ConcurrencyLimitedStreamingChatModel(model, openAiLimiter,
+                llmMonitoringService::currentAgent, llmMonitoringService::currentBudget) : model;
+    }
+}
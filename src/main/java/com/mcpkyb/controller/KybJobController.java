@@ -0,0 +1,73 @@
+package com.mcpkyb.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcpkyb.jobs.KybJob;
+import com.mcpkyb.jobs.KybJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/kyb/jobs")
+public class KybJobController {
+
+    @Autowired
+    private KybJobService kybJobService;
+
+    /**
+     * Queues a KYB run and returns its job ID immediately (202). Returns 429 when the job queue is full.
+     * Body: {"customer_id": "CUST-0001"}
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestBody JsonNode request) {
+        String customerId = request.path("customer_id").asText(null);
+        Optional<KybJob> job = kybJobService.submit(customerId);
+        if (job.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "KYB job queue is full");
+            errorResponse.put("customer_id", customerId);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(errorResponse);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/kyb/jobs/" + job.get().jobId()))
+                .body(job.get());
+    }
+
+    /**
+     * Returns the job's status, and its KYB result once it has succeeded.
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        Optional<KybJob> job = kybJobService.find(jobId);
+        if (job.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Job not found");
+            errorResponse.put("job_id", jobId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        return ResponseEntity.ok(job.get());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid job request");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+}
@@ -1,18 +1,32 @@
 package com.mcpkyb.controller;
 
 import com.mcpkyb.service.ConductorAgent;
+import com.mcpkyb.service.KybBatchService;
+import com.mcpkyb.utils.JsonCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/kyb")
@@ -21,6 +35,19 @@ public class OrchestratorController {
     @Autowired
     private ConductorAgent conductorAgent;
 
+    @Autowired
+    private KybBatchService kybBatchService;
+
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    @Autowired
+    @Qualifier("kybStepExecutor")
+    private ExecutorService kybStepExecutor;
+
+    @Value("${kyb.stream.timeout-ms:300000}")
+    private long streamTimeoutMs;
+
     @GetMapping("/run/{customerId}")
     public ResponseEntity<Map<String, Object>> runKYB(@PathVariable String customerId) {
         try {
@@ -42,6 +69,85 @@ public class OrchestratorController {
         }
     }
     
+    /**
+     * Runs KYB for one customer and streams each step result as a Server-Sent Event as soon as it
+     * completes (deterministic steps arrive first, while the LLM narrative is still generating),
+     * "kyb_note_token" events as the narrative is generated, then a "result" event with the full
+     * assessment, or an "error" event.
+     */
+    @GetMapping(value = "/run/{customerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamKYB(@PathVariable String customerId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        long startNanos = System.nanoTime();
+        kybStepExecutor.execute(() -> {
+            try {
+                Map<String, Object> result = conductorAgent.runKYB(customerId, (step, payload) -> {
+                    payload.put("elapsed_ms", (System.nanoTime() - startNanos) / 1_000_000);
+                    sendEvent(emitter, step, payload);
+                });
+                sendEvent(emitter, "result", result);
+                emitter.complete();
+            } catch (Exception e) {
+                Map<String, Object> errorEvent = new HashMap<>();
+                errorEvent.put("error", "KYB workflow failed");
+                errorEvent.put("message", e.getMessage());
+                errorEvent.put("customer_id", customerId);
+                errorEvent.put("exception_type", e.getClass().getSimpleName());
+                try {
+                    sendEvent(emitter, "error", errorEvent);
+                    emitter.complete();
+                } catch (UncheckedIOException ignored) {
+                    // client already gone
+                }
+            }
+        });
+        return emitter;
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs KYB for a list of customer IDs and streams one NDJSON line per customer as each run
+     * finishes, followed by a summary line with throughput and failure counts.
+     */
+    @PostMapping(value = "/run/batch", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> runBatch(@RequestBody List<String> customerIds,
+                                                          @RequestParam(required = false) Integer concurrency) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try {
+                Map<String, Object> summary = kybBatchService.runBatch(customerIds, concurrency,
+                        line -> writeNdjsonLine(outputStream, line));
+                writeNdjsonLine(outputStream, summary);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private void writeNdjsonLine(OutputStream outputStream, Map<String, Object> line) {
+        try {
+            outputStream.write(jsonCodec.writeMapBytes(line));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleException(Exception e) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -0,0 +1,64 @@
+package com.mcpkyb.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcpkyb.portfolio.PortfolioService;
+import com.mcpkyb.rules.CompiledRuleSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/kyb/portfolio")
+public class PortfolioController {
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    /**
+     * Re-scores every customer against the active rules (deterministic rules only, no LLM calls)
+     * and returns band and trigger counts, optionally with the per-customer results.
+     */
+    @GetMapping("/scores")
+    public ResponseEntity<Map<String, Object>> scorePortfolio(
+            @RequestParam(name = "include_customers", defaultValue = "false") boolean includeCustomers) {
+        return ResponseEntity.ok(portfolioService.scoreActiveRules(includeCustomers));
+    }
+
+    /**
+     * What-if backtest: scores the whole book under the active rules and under the candidate
+     * rules.json in the request body, returning the GREEN/AMBER/RED migration matrix and the
+     * customers whose band would change. Nothing is applied.
+     */
+    @PostMapping("/backtest")
+    public ResponseEntity<Map<String, Object>> backtest(
+            @RequestBody JsonNode candidateRules,
+            @RequestParam(name = "max_changed_customers", defaultValue = "1000") int maxChangedCustomers) {
+        List<String> problems = CompiledRuleSet.validate(candidateRules);
+        if (!problems.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid candidate rules");
+            errorResponse.put("problems", problems);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        return ResponseEntity.ok(portfolioService.backtest(candidateRules, Math.max(0, maxChangedCustomers)));
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Map<String, Object>> handleException(Exception e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Portfolio scoring failed");
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    }
+}
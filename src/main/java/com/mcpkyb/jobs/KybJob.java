@@ -0,0 +1,55 @@
+package com.mcpkyb.jobs;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One asynchronous KYB run. Immutable; each state change produces a new instance that the job store
+ * persists.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record KybJob(String jobId,
+                     String customerId,
+                     Status status,
+                     Instant submittedAt,
+                     Instant startedAt,
+                     Instant finishedAt,
+                     Map<String, Object> result,
+                     String error) {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+
+    public static KybJob queued(String customerId) {
+        return new KybJob(UUID.randomUUID().toString(), customerId, Status.QUEUED, Instant.now(),
+                null, null, null, null);
+    }
+
+    public KybJob requeued() {
+        return new KybJob(jobId, customerId, Status.QUEUED, submittedAt, null, null, null, null);
+    }
+
+    public KybJob running() {
+        return new KybJob(jobId, customerId, Status.RUNNING, submittedAt, Instant.now(), null, null, null);
+    }
+
+    public KybJob succeeded(Map<String, Object> kybResult) {
+        return new KybJob(jobId, customerId, Status.SUCCEEDED, submittedAt, startedAt, Instant.now(), kybResult, null);
+    }
+
+    public KybJob failed(String message) {
+        return new KybJob(jobId, customerId, Status.FAILED, submittedAt, startedAt, Instant.now(), null, message);
+    }
+}
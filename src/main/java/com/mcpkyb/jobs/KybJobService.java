@@ -0,0 +1,168 @@
+package com.mcpkyb.jobs;
+
+import com.mcpkyb.service.ConductorAgent;
+import com.mcpkyb.service.KybPriorityScheduler;
+import com.mcpkyb.service.ReferenceDataStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs KYB asynchronously: submit() returns a job straight away and the run is queued on
+ * KybPriorityScheduler, which decides when it starts. At most kyb.jobs.queue-capacity jobs may be
+ * waiting; beyond that new jobs are rejected rather than piling up.
+ *
+ * Jobs are persisted in KybJobStore at every state change. Jobs that were queued or running when
+ * the service stopped are queued again on startup.
+ */
+@Service
+public class KybJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybJobService.class);
+
+    private final ConductorAgent conductorAgent;
+    private final ReferenceDataStore referenceDataStore;
+    private final KybJobStore jobStore;
+    private final KybPriorityScheduler scheduler;
+    private final int queueCapacity;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean stopping;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter succeededCounter;
+    private final Counter failedCounter;
+
+    public KybJobService(ConductorAgent conductorAgent,
+                         ReferenceDataStore referenceDataStore,
+                         KybJobStore jobStore,
+                         KybPriorityScheduler scheduler,
+                         MeterRegistry meterRegistry,
+                         @Value("${kyb.jobs.queue-capacity:100}") int queueCapacity) {
+        this.conductorAgent = conductorAgent;
+        this.referenceDataStore = referenceDataStore;
+        this.jobStore = jobStore;
+        this.scheduler = scheduler;
+        this.queueCapacity = Math.max(1, queueCapacity);
+
+        this.acceptedCounter = Counter.builder("kyb.jobs.submitted")
+                .description("Async KYB job submissions")
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("kyb.jobs.submitted")
+                .description("Async KYB job submissions")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.succeededCounter = Counter.builder("kyb.jobs.completed")
+                .description("Async KYB jobs finished")
+                .tag("status", "succeeded")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("kyb.jobs.completed")
+                .description("Async KYB jobs finished")
+                .tag("status", "failed")
+                .register(meterRegistry);
+        Gauge.builder("kyb.jobs.queue_depth", queued, AtomicInteger::get)
+                .description("Async KYB jobs waiting for a slot")
+                .register(meterRegistry);
+        Gauge.builder("kyb.jobs.running", running, AtomicInteger::get)
+                .description("Async KYB jobs currently running")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void resumeUnfinishedJobs() {
+        List<KybJob> unfinished = jobStore.load().stream()
+                .filter(job -> !job.status().isFinished())
+                .sorted(Comparator.comparing(KybJob::submittedAt))
+                .toList();
+        int resumed = 0;
+        for (KybJob job : unfinished) {
+            KybJob requeued = job.requeued();
+            jobStore.save(requeued);
+            if (enqueue(requeued)) {
+                resumed++;
+            } else {
+                jobStore.save(requeued.failed("Not resumed after restart: job queue full"));
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            logger.info("Resumed {} of {} unfinished KYB jobs", resumed, unfinished.size());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Jobs that have not started stay QUEUED in the store and are resumed on restart
+        stopping = true;
+    }
+
+    /**
+     * Queues a KYB run for the customer. Returns empty when the queue is full.
+     *
+     * @throws IllegalArgumentException if the customer is not in the CRM data
+     */
+    public Optional<KybJob> submit(String customerId) {
+        if (customerId == null || customerId.isBlank() || referenceDataStore.findCustomer(customerId) == null) {
+            throw new IllegalArgumentException("Unknown customer_id: " + customerId);
+        }
+        KybJob job = KybJob.queued(customerId);
+        jobStore.save(job);
+        if (!enqueue(job)) {
+            jobStore.delete(job.jobId());
+            rejectedCounter.increment();
+            return Optional.empty();
+        }
+        acceptedCounter.increment();
+        return Optional.of(job);
+    }
+
+    public Optional<KybJob> find(String jobId) {
+        return jobStore.find(jobId);
+    }
+
+    private boolean enqueue(KybJob job) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            return false;
+        }
+        scheduler.submit(job.customerId(), () -> {
+            queued.decrementAndGet();
+            if (!stopping) {
+                run(job);
+            }
+            return null;
+        });
+        return true;
+    }
+
+    private void run(KybJob queuedJob) {
+        KybJob runningJob = queuedJob.running();
+        jobStore.save(runningJob);
+        running.incrementAndGet();
+        try {
+            Map<String, Object> result = conductorAgent.runKYB(runningJob.customerId());
+            jobStore.save(runningJob.succeeded(result));
+            succeededCounter.increment();
+        } catch (Exception e) {
+            logger.warn("KYB job {} for {} failed: {}", runningJob.jobId(), runningJob.customerId(), e.getMessage());
+            jobStore.save(runningJob.failed(e.getMessage()));
+            failedCounter.increment();
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+}
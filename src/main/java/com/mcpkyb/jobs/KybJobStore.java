@@ -0,0 +1,145 @@
+package com.mcpkyb.jobs;
+
+import com.mcpkyb.utils.JsonCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable store for async KYB jobs: one JSON file per job under kyb.jobs.directory, written with an
+ * atomic rename so a crash never leaves a half-written job, plus an in-memory index for lookups.
+ *
+ * Finished jobs older than kyb.jobs.retention are dropped when the store is loaded at startup and,
+ * while it runs, as new jobs are saved, at most once per kyb.jobs.purge-interval.
+ */
+@Service
+public class KybJobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybJobStore.class);
+
+    private final JsonCodec jsonCodec;
+    private final Path directory;
+    private final Duration retention;
+    private final long purgeIntervalNanos;
+    private final Map<String, KybJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeNanos;
+
+    public KybJobStore(JsonCodec jsonCodec,
+                       @Value("${kyb.jobs.directory:./data/kyb-jobs}") String directory,
+                       @Value("${kyb.jobs.retention:7d}") Duration retention,
+                       @Value("${kyb.jobs.purge-interval:10m}") Duration purgeInterval) {
+        this.jsonCodec = jsonCodec;
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        this.retention = retention;
+        this.purgeIntervalNanos = purgeInterval.toNanos();
+        this.nextPurgeNanos = new AtomicLong(System.nanoTime() + purgeIntervalNanos);
+    }
+
+    /**
+     * Loads persisted jobs into the index, removing expired ones, and returns what was loaded.
+     */
+    public Collection<KybJob> load() {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return List.of();
+        }
+        Instant expiry = Instant.now().minus(retention);
+        int expired = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                try {
+                    KybJob job = jsonCodec.readJob(file);
+                    if (isExpired(job, expiry)) {
+                        Files.deleteIfExists(file);
+                        expired++;
+                        continue;
+                    }
+                    jobs.put(job.jobId(), job);
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable KYB job file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read KYB job store {}: {}", directory, e.getMessage());
+        }
+        logger.info("Loaded {} KYB jobs from {} ({} expired jobs removed)", jobs.size(), directory, expired);
+        return new ArrayList<>(jobs.values());
+    }
+
+    public Optional<KybJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public void save(KybJob job) {
+        jobs.put(job.jobId(), job);
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                Path tempFile = Files.createTempFile(directory, job.jobId(), ".tmp");
+                jsonCodec.writeJob(tempFile, job);
+                Files.move(tempFile, directory.resolve(job.jobId() + ".json"),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warn("Could not persist KYB job {}: {}", job.jobId(), e.getMessage());
+            }
+        }
+        long next = nextPurgeNanos.get();
+        if (System.nanoTime() - next >= 0 && nextPurgeNanos.compareAndSet(next, System.nanoTime() + purgeIntervalNanos)) {
+            purgeExpired();
+        }
+    }
+
+    /**
+     * Removes finished jobs older than the retention period from the index and the directory.
+     * Returns how many were removed.
+     */
+    public int purgeExpired() {
+        Instant expiry = Instant.now().minus(retention);
+        int expired = 0;
+        for (KybJob job : jobs.values()) {
+            if (isExpired(job, expiry) && jobs.remove(job.jobId(), job)) {
+                deleteFile(job.jobId());
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            logger.info("Removed {} expired KYB jobs", expired);
+        }
+        return expired;
+    }
+
+    public void delete(String jobId) {
+        jobs.remove(jobId);
+        deleteFile(jobId);
+    }
+
+    private void deleteFile(String jobId) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(jobId + ".json"));
+        } catch (IOException e) {
+            logger.warn("Could not delete KYB job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private static boolean isExpired(KybJob job, Instant expiry) {
+        return job.status().isFinished() && job.finishedAt() != null && job.finishedAt().isBefore(expiry);
+    }
+}
@@ -0,0 +1,292 @@
+package com.mcpkyb.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit for calls to one provider, shared by every agent.
+ *
+ * The limit grows by roughly one slot per limit's worth of successful calls while latency stays
+ * within latencyTolerance times its moving average and the limit is actually in use. Calls slower
+ * than that shrink it by backoffRatio. The average is kept per workload (the calling agent), since
+ * a long narrative completion is not slow just because it takes longer than a one-line
+ * classification. A rate-limited (429) or timed-out call halves the limit at once.
+ * Callers over the limit wait in a FIFO queue of bounded length and for a bounded time, cut short
+ * by the caller's own budget when it has one. Past either bound the call is rejected with a
+ * RejectedExecutionException instead of piling more load onto the provider, or taking a slot for
+ * an answer nobody is waiting for any more.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final double DROP_BACKOFF_RATIO = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private final Map<String, Double> averageLatencyNanos = new HashMap<>();
+
+    private final Timer queueWaitTimer;
+    private final Counter rejections;
+    private final Counter drops;
+
+    public AdaptiveConcurrencyLimiter(String name,
+                                      int initialLimit,
+                                      int minLimit,
+                                      int maxLimit,
+                                      int maxQueue,
+                                      Duration queueTimeout,
+                                      double latencyTolerance,
+                                      double backoffRatio,
+                                      MeterRegistry meterRegistry) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+
+        Gauge.builder("llm.limiter.limit", this, AdaptiveConcurrencyLimiter::currentLimit)
+                .description("Current concurrency limit for LLM calls")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.in_flight", this, AdaptiveConcurrencyLimiter::inFlight)
+                .description("LLM calls currently holding a concurrency slot")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.queued", this, AdaptiveConcurrencyLimiter::queued)
+                .description("LLM calls waiting for a concurrency slot")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("llm.limiter.queue_wait")
+                .description("Time LLM calls waited for a concurrency slot")
+                .tag("limiter", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejections = Counter.builder("llm.limiter.rejections")
+                .description("LLM calls rejected because the wait queue was full, the wait timed out or the caller's budget ran out")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.drops = Counter.builder("llm.limiter.drops")
+                .description("LLM calls that were rate limited or timed out, each shrinking the limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waits for a concurrency slot for a call of the given workload, whose latency is judged
+     * against earlier calls of the same workload only. The wait is bounded by the queue timeout and
+     * by budget, the time the caller has left (null for no limit); a caller with no budget left is
+     * rejected without waiting. The returned permit must be finished exactly once.
+     */
+    public Permit acquire(String workload, Duration budget) {
+        long startNanos = System.nanoTime();
+        long waitNanos = budget != null ? Math.min(queueTimeoutNanos, budget.toNanos()) : queueTimeoutNanos;
+        if (budget != null && waitNanos <= 0) {
+            rejections.increment();
+            throw new RejectedExecutionException("Caller's time budget ran out before the LLM call started");
+        }
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                queueWaitTimer.record(0, TimeUnit.NANOSECONDS);
+                return new Permit(workload);
+            }
+            if (queue.size() >= maxQueue) {
+                rejections.increment();
+                throw new RejectedExecutionException("LLM call queue is full (" + queue.size() + " waiting)");
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            long remainingNanos = waitNanos;
+            try {
+                while (!waiter.granted) {
+                    if (remainingNanos <= 0) {
+                        queue.remove(waiter);
+                        rejections.increment();
+                        throw new RejectedExecutionException("Timed out waiting for an LLM concurrency slot");
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.granted) {
+                    // The slot was handed over as the wait was interrupted; pass it on
+                    inFlight--;
+                    grantWaiting();
+                } else {
+                    queue.remove(waiter);
+                }
+                throw new RejectedExecutionException("Interrupted waiting for an LLM concurrency slot", e);
+            }
+            queueWaitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return new Permit(workload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String workload, long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit / 2;
+            inFlight--;
+            if (dropped) {
+                drops.increment();
+                limit = Math.max(minLimit, limit * DROP_BACKOFF_RATIO);
+            } else if (latencyNanos >= 0) {
+                double average = averageLatencyNanos.getOrDefault(workload, (double) latencyNanos);
+                if (latencyNanos > average * latencyTolerance) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+                averageLatencyNanos.put(workload, average + LATENCY_SMOOTHING * (latencyNanos - average));
+            }
+            grantWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock
+    private void grantWaiting() {
+        while (inFlight < (int) limit && !queue.isEmpty()) {
+            Waiter next = queue.pollFirst();
+            next.granted = true;
+            inFlight++;
+            next.condition.signal();
+        }
+    }
+
+    /**
+     * True for provider rate limiting and timeouts, the signals that the limit is too high. Matched
+     * by exception name and message because the HTTP client wraps them differently per transport.
+     */
+    public static boolean isOverloadSignal(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            String type = current.getClass().getSimpleName();
+            String message = String.valueOf(current.getMessage());
+            if (type.contains("RateLimit") || type.contains("Timeout")
+                    || message.contains("429") || message.contains("rate_limit_exceeded")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * One held concurrency slot.
+     */
+    public final class Permit {
+
+        private final String workload;
+        private final long grantedAtNanos = System.nanoTime();
+        private boolean finished;
+
+        private Permit(String workload) {
+            this.workload = workload;
+        }
+
+        /**
+         * Releases the slot and feeds the call's latency into the limit.
+         */
+        public void success() {
+            finish(System.nanoTime() - grantedAtNanos, false);
+        }
+
+        /**
+         * Releases the slot after a rate-limited or timed-out call, shrinking the limit.
+         */
+        public void dropped() {
+            finish(-1, true);
+        }
+
+        /**
+         * Releases the slot without adjusting the limit, for failures unrelated to load and for
+         * calls whose duration says nothing about provider load (streamed responses).
+         */
+        public void ignore() {
+            finish(-1, false);
+        }
+
+        /**
+         * Releases the slot according to how the call ended.
+         */
+        public void failed(Throwable error) {
+            if (isOverloadSignal(error)) {
+                dropped();
+            } else {
+                ignore();
+            }
+        }
+
+        private void finish(long latencyNanos, boolean dropped) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            release(workload, latencyNanos, dropped);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.mcpkyb.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * ChatModel decorator that serves exact-match repeats of a prompt from a cache instead of calling
+ * the underlying model.
+ *
+ * The key is the model name, the request parameters (temperature, token limit, response format,
+ * tools, stop sequences and any provider-specific options) and the normalized message list (message
+ * type and text, with runs of whitespace collapsed so indentation changes in prompt text blocks
+ * don't defeat the cache). The in-memory tier is bounded by TTL and total response weight; the
+ * optional disk tier stores one JSON file per key so cached answers survive restarts.
+ */
+public class CachingChatModel implements ChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingChatModel.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ChatModel delegate;
+    private final String defaultModelName;
+    private final Duration ttl;
+    private final Path diskDirectory;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, ChatResponse> memory;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public CachingChatModel(ChatModel delegate,
+                            String defaultModelName,
+                            Duration ttl,
+                            long maxWeightChars,
+                            Path diskDirectory,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.defaultModelName = defaultModelName;
+        this.ttl = ttl;
+        this.diskDirectory = diskDirectory;
+        this.objectMapper = objectMapper;
+        this.memory = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxWeightChars)
+                .weigher((String key, ChatResponse response) -> key.length() + textLength(response))
+                .build();
+
+        this.memoryHits = Counter.builder("llm.cache.requests")
+                .description("LLM response cache lookups")
+                .tag("result", "hit")
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        this.diskHits = Counter.builder("llm.cache.requests")
+                .description("LLM response cache lookups")
+                .tag("result", "hit")
+                .tag("tier", "disk")
+                .register(meterRegistry);
+        this.misses = Counter.builder("llm.cache.requests")
+                .description("LLM response cache lookups")
+                .tag("result", "miss")
+                .tag("tier", "none")
+                .register(meterRegistry);
+        Gauge.builder("llm.cache.entries", memory, Cache::estimatedSize)
+                .description("Entries in the in-memory LLM response cache")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        String key = cacheKey(chatRequest);
+
+        ChatResponse cached = memory.getIfPresent(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        cached = readFromDisk(key);
+        if (cached != null) {
+            memory.put(key, cached);
+            diskHits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        ChatResponse response = delegate.chat(chatRequest);
+        if (isCacheable(response)) {
+            memory.put(key, response);
+            writeToDisk(key, response);
+        }
+        return response;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners on a miss; hits never reach the provider
+        return List.of();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    String cacheKey(ChatRequest chatRequest) {
+        String modelName = chatRequest.modelName() != null ? chatRequest.modelName() : defaultModelName;
+        MessageDigest digest = sha256();
+        update(digest, String.valueOf(modelName));
+        // Parameter classes render every field they hold, including provider-specific ones
+        update(digest, String.valueOf(chatRequest.parameters()));
+        for (ChatMessage message : chatRequest.messages()) {
+            update(digest, message.type().name());
+            update(digest, normalize(textOf(message)));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String textOf(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            return systemMessage.text();
+        }
+        if (message instanceof UserMessage userMessage) {
+            return userMessage.hasSingleText() ? userMessage.singleText() : userMessage.contents().toString();
+        }
+        if (message instanceof AiMessage aiMessage) {
+            return aiMessage.text() != null ? aiMessage.text() : aiMessage.toolExecutionRequests().toString();
+        }
+        return message.toString();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : WHITESPACE.matcher(text.strip()).replaceAll(" ");
+    }
+
+    private static boolean isCacheable(ChatResponse response) {
+        return response != null
+                && response.aiMessage() != null
+                && response.aiMessage().text() != null
+                && !response.aiMessage().hasToolExecutionRequests()
+                && response.finishReason() != FinishReason.LENGTH
+                && response.finishReason() != FinishReason.CONTENT_FILTER;
+    }
+
+    private static int textLength(ChatResponse response) {
+        String text = response.aiMessage() != null ? response.aiMessage().text() : null;
+        return text != null ? text.length() : 0;
+    }
+
+    private ChatResponse readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskDirectory.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonNode entry = objectMapper.readTree(file.toFile());
+            Instant createdAt = Instant.parse(entry.path("created_at").asText());
+            if (createdAt.plus(ttl).isBefore(Instant.now())) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            ChatResponse.Builder builder = ChatResponse.builder()
+                    .aiMessage(AiMessage.from(entry.path("text").asText()))
+                    .modelName(entry.path("model").asText(null));
+            if (entry.hasNonNull("finish_reason")) {
+                builder.finishReason(FinishReason.valueOf(entry.path("finish_reason").asText()));
+            }
+            if (entry.hasNonNull("input_tokens") || entry.hasNonNull("output_tokens")) {
+                builder.tokenUsage(new TokenUsage(
+                        entry.hasNonNull("input_tokens") ? entry.path("input_tokens").asInt() : null,
+                        entry.hasNonNull("output_tokens") ? entry.path("output_tokens").asInt() : null));
+            }
+            return builder.build();
+        } catch (Exception e) {
+            logger.debug("Ignoring unreadable LLM cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, ChatResponse response) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("created_at", Instant.now().toString());
+        entry.put("model", response.modelName());
+        entry.put("text", response.aiMessage().text());
+        entry.put("finish_reason", response.finishReason() != null ? response.finishReason().name() : null);
+        TokenUsage tokenUsage = response.tokenUsage();
+        entry.put("input_tokens", tokenUsage != null ? tokenUsage.inputTokenCount() : null);
+        entry.put("output_tokens", tokenUsage != null ? tokenUsage.outputTokenCount() : null);
+        try {
+            Files.createDirectories(diskDirectory);
+            Path tempFile = Files.createTempFile(diskDirectory, key, ".tmp");
+            objectMapper.writeValue(tempFile.toFile(), entry);
+            Files.move(tempFile, diskDirectory.resolve(key + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write LLM cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
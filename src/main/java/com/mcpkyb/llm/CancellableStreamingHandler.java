@@ -0,0 +1,25 @@
+package com.mcpkyb.llm;
+
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+/**
+ * StreamingChatResponseHandler its caller can cancel once nobody is waiting for the stream any
+ * more. Cancelling only detaches the caller: decorators such as ConcurrencyLimitedStreamingChatModel
+ * stop passing it callbacks, but the provider stream itself runs on to its end, and whatever they
+ * hold for it (a concurrency slot) stays held until then.
+ */
+public abstract class CancellableStreamingHandler implements StreamingChatResponseHandler {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the stream for this handler: whatever it delivers from now on is ignored.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
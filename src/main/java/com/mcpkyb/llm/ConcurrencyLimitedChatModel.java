@@ -0,0 +1,75 @@
+package com.mcpkyb.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * ChatModel decorator that holds a slot of a shared AdaptiveConcurrencyLimiter for the duration of
+ * each call, so concurrent agents and batch runs cannot flood the provider.
+ */
+public class ConcurrencyLimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Supplier<String> workload;
+    private final Supplier<Duration> budget;
+
+    /**
+     * workload names the kind of call being made and budget the time its caller has left (null for
+     * no limit), both read on the calling thread (the agent), so the limiter compares each call's
+     * latency with calls like it and does not hold it in the queue past the point its answer can
+     * still be used.
+     */
+    public ConcurrencyLimitedChatModel(ChatModel delegate, AdaptiveConcurrencyLimiter limiter,
+            Supplier<String> workload, Supplier<Duration> budget) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.workload = workload;
+        this.budget = budget;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(workload.get(), budget.get());
+        ChatResponse response;
+        try {
+            response = delegate.chat(chatRequest);
+        } catch (RuntimeException | Error e) {
+            permit.failed(e);
+            throw e;
+        }
+        permit.success();
+        return response;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,100 @@
+package com.mcpkyb.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * StreamingChatModel decorator that holds a slot of the same limiter as the blocking model from
+ * the request until the stream completes or fails. A stream's duration depends on how much it
+ * generates rather than on provider load, so only its failures adjust the limit. Cancelling a
+ * CancellableStreamingHandler stops its callbacks but keeps the slot: the provider is still
+ * generating (and billing) the stream, so the slot is only freed when it completes or fails.
+ */
+public class ConcurrencyLimitedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Supplier<String> workload;
+    private final Supplier<Duration> budget;
+
+    /**
+     * workload names the kind of call being made and budget the time its caller has left (null for
+     * no limit), both read on the calling thread (the agent), so the limiter compares each call's
+     * latency with calls like it and does not hold it in the queue past the point its answer can
+     * still be used.
+     */
+    public ConcurrencyLimitedStreamingChatModel(StreamingChatModel delegate, AdaptiveConcurrencyLimiter limiter,
+            Supplier<String> workload, Supplier<Duration> budget) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.workload = workload;
+        this.budget = budget;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(workload.get(), budget.get());
+        CancellableStreamingHandler cancellable = handler instanceof CancellableStreamingHandler c ? c : null;
+        try {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    if (cancellable == null || !cancellable.isCancelled()) {
+                        handler.onPartialResponse(partialResponse);
+                    }
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    permit.ignore();
+                    if (cancellable == null || !cancellable.isCancelled()) {
+                        handler.onCompleteResponse(completeResponse);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    permit.failed(error);
+                    if (cancellable == null || !cancellable.isCancelled()) {
+                        handler.onError(error);
+                    }
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            permit.failed(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
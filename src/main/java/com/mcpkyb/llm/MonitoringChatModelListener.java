@@ -0,0 +1,71 @@
+package com.mcpkyb.llm;
+
+import com.mcpkyb.service.LLMMonitoringService;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+
+/**
+ * Feeds LLMMonitoringService from the provider's own answer instead of estimates: token usage,
+ * model name and finish reason come from each ChatResponse, and wall time is measured from the
+ * request leaving to the response (or error) arriving.
+ *
+ * The calling agent is captured in onRequest, which runs on the caller's thread; responses to
+ * streaming requests arrive on the client's threads.
+ */
+public class MonitoringChatModelListener implements ChatModelListener {
+
+    private static final String START_NANOS = "kyb.monitoring.start_nanos";
+    private static final String AGENT = "kyb.monitoring.agent";
+
+    private final LLMMonitoringService llmMonitoringService;
+    private final String defaultModelName;
+
+    public MonitoringChatModelListener(LLMMonitoringService llmMonitoringService, String defaultModelName) {
+        this.llmMonitoringService = llmMonitoringService;
+        this.defaultModelName = defaultModelName;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        requestContext.attributes().put(START_NANOS, System.nanoTime());
+        requestContext.attributes().put(AGENT, llmMonitoringService.currentAgent());
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        ChatResponse response = responseContext.chatResponse();
+        TokenUsage tokenUsage = response.tokenUsage();
+        llmMonitoringService.recordSuccessfulCall(
+                agentOf(responseContext.attributes().get(AGENT)),
+                response.modelName() != null ? response.modelName() : requestedModel(responseContext.chatRequest().modelName()),
+                tokenUsage != null && tokenUsage.inputTokenCount() != null ? tokenUsage.inputTokenCount() : 0,
+                tokenUsage != null && tokenUsage.outputTokenCount() != null ? tokenUsage.outputTokenCount() : 0,
+                elapsedNanos(responseContext.attributes().get(START_NANOS)),
+                response.finishReason() != null ? response.finishReason().name() : "UNKNOWN");
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        llmMonitoringService.recordFailedCall(
+                agentOf(errorContext.attributes().get(AGENT)),
+                requestedModel(errorContext.chatRequest().modelName()),
+                errorContext.error().getClass().getSimpleName(),
+                elapsedNanos(errorContext.attributes().get(START_NANOS)));
+    }
+
+    private String requestedModel(String modelName) {
+        return modelName != null ? modelName : defaultModelName;
+    }
+
+    private static String agentOf(Object agent) {
+        return agent instanceof String name ? name : LLMMonitoringService.UNKNOWN_AGENT;
+    }
+
+    private static long elapsedNanos(Object startNanos) {
+        return startNanos instanceof Long start ? System.nanoTime() - start : 0;
+    }
+}
@@ -0,0 +1,204 @@
+package com.mcpkyb.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.mcpkyb.utils.JsonCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds agent prompts from structured inputs within a per-agent token budget.
+ *
+ * Inputs are serialized as compact JSON with nulls, empty values, internal "_" fields and the
+ * fields the agent lists as irrelevant removed. Tokens are counted locally with the model's BPE
+ * encoding. When a prompt still exceeds kyb.prompt.budget.&lt;agent&gt; (default
+ * kyb.prompt.budget.default), inputs are cut from the last one backwards, so agents list their
+ * inputs most important first. Each prompt records its size. The tokens saved against the same
+ * inputs pretty-printed in full cost a second serialization and tokenization, so they are measured
+ * on a sample of prompts (kyb.prompt.tokens-saved.sample-rate) and scaled up to an estimate.
+ */
+@Component
+public class PromptBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptBudget.class);
+
+    private static final String TRUNCATION_MARKER = " ...[truncated to fit the prompt budget]";
+
+    private final JsonCodec jsonCodec;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Encoding encoding;
+    private final int defaultBudget;
+    private final double savingsSampleRate;
+
+    public PromptBudget(JsonCodec jsonCodec,
+                        Environment environment,
+                        MeterRegistry meterRegistry,
+                        @Value("${openai.model.name}") String modelName,
+                        @Value("${kyb.prompt.budget.default:8000}") int defaultBudget,
+                        @Value("${kyb.prompt.tokens-saved.sample-rate:0.05}") double savingsSampleRate) {
+        this.jsonCodec = jsonCodec;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.defaultBudget = defaultBudget;
+        this.savingsSampleRate = Math.max(0, Math.min(1, savingsSampleRate));
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        this.encoding = registry.getEncodingForModel(modelName)
+                .orElseGet(() -> registry.getEncoding(EncodingType.O200K_BASE));
+    }
+
+    /**
+     * One prompt input: a value to serialize and the field names to leave out of it, at any depth.
+     * Strings are used as they are.
+     */
+    public record Input(String name, Object value, Set<String> dropFields) {
+
+        public static Input of(String name, Object value, String... dropFields) {
+            return new Input(name, value, Set.of(dropFields));
+        }
+    }
+
+    public int countTokens(String text) {
+        return encoding.countTokens(text);
+    }
+
+    /**
+     * Serializes a value as compact JSON without nulls, empty values, "_" fields or dropFields.
+     */
+    public String compact(Object value, Set<String> dropFields) {
+        if (value == null || value instanceof String) {
+            return String.valueOf(value);
+        }
+        JsonNode node = value instanceof JsonNode json ? json.deepCopy() : jsonCodec.mapper().valueToTree(value);
+        prune(node, dropFields);
+        try {
+            return jsonCodec.write(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fills userTemplate's %s placeholders with the compacted inputs, in order, cutting inputs from
+     * the last one backwards until the system prompt plus user prompt fit the agent's budget.
+     */
+    public String render(String agent, String systemPrompt, String userTemplate, Input... inputs) {
+        String[] values = new String[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            values[i] = compact(inputs[i].value(), inputs[i].dropFields());
+        }
+
+        int budget = budgetFor(agent);
+        int systemTokens = countTokens(systemPrompt);
+        int tokens = systemTokens + countTokens(String.format(userTemplate, (Object[]) values));
+        for (int i = inputs.length - 1; i >= 0 && tokens > budget; i--) {
+            int inputTokens = countTokens(values[i]);
+            int keep = Math.max(0, inputTokens - (tokens - budget) - countTokens(TRUNCATION_MARKER));
+            values[i] = truncate(values[i], keep);
+            logger.debug("Cut prompt input {} of {} from {} to {} tokens to fit its {}-token budget",
+                    inputs[i].name(), agent, inputTokens, keep, budget);
+            counter("llm.prompt.truncations", "Prompt inputs cut to fit an agent's token budget", agent).increment();
+            tokens = systemTokens + countTokens(String.format(userTemplate, (Object[]) values));
+        }
+
+        String prompt = String.format(userTemplate, (Object[]) values);
+        recordSize(agent, userTemplate, inputs, tokens - systemTokens, tokens);
+        return prompt;
+    }
+
+    private void recordSize(String agent, String userTemplate, Input[] inputs, int userTokens, int tokens) {
+        DistributionSummary.builder("llm.prompt.tokens")
+                .description("Prompt tokens per LLM request, counted locally, by agent")
+                .tag("agent", agent)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(tokens);
+
+        if (savingsSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= savingsSampleRate) {
+            return;
+        }
+        // The system prompt is the same either way, so only the user prompts are compared
+        Object[] verbose = new String[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            verbose[i] = verbose(inputs[i].value());
+        }
+        int verboseUserTokens = countTokens(String.format(userTemplate, verbose));
+        counter("llm.prompt.tokens_saved", "Estimated prompt tokens saved by compaction and budgets against full pretty-printed inputs, from a sample of prompts", agent)
+                .increment(Math.max(0, verboseUserTokens - userTokens) / savingsSampleRate);
+    }
+
+    private String verbose(Object value) {
+        if (value == null || value instanceof String) {
+            return String.valueOf(value);
+        }
+        try {
+            return jsonCodec.writePretty(value);
+        } catch (IOException e) {
+            return String.valueOf(value);
+        }
+    }
+
+    private String truncate(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return TRUNCATION_MARKER.strip();
+        }
+        return encoding.decode(encoding.encode(text, maxTokens).getTokens()) + TRUNCATION_MARKER;
+    }
+
+    private int budgetFor(String agent) {
+        return environment.getProperty("kyb.prompt.budget." + agent, Integer.class, defaultBudget);
+    }
+
+    private Counter counter(String name, String description, String agent) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("agent", agent)
+                .register(meterRegistry);
+    }
+
+    private static void prune(JsonNode node, Set<String> dropFields) {
+        if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                prune(field.getValue(), dropFields);
+                if (dropFields.contains(field.getKey()) || field.getKey().startsWith("_") || isEmpty(field.getValue())) {
+                    fields.remove();
+                }
+            }
+        } else if (node instanceof ArrayNode array) {
+            Iterator<JsonNode> elements = array.elements();
+            while (elements.hasNext()) {
+                JsonNode element = elements.next();
+                prune(element, dropFields);
+                if (isEmpty(element)) {
+                    elements.remove();
+                }
+            }
+        }
+    }
+
+    private static boolean isEmpty(JsonNode node) {
+        return node.isNull()
+                || (node.isTextual() && node.asText().isBlank())
+                || (node.isContainerNode() && node.isEmpty());
+    }
+}
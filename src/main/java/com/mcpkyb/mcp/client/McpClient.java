@@ -1,8 +1,8 @@
 package com.mcpkyb.mcp.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mcpkyb.mcp.model.*;
+import com.mcpkyb.utils.JsonCodec;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -19,12 +19,13 @@ import java.util.concurrent.TimeUnit;
 public class McpClient {
     
     private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final JsonCodec jsonCodec;
     private final String serverBaseUrl;
     
-    public McpClient(@Value("${mcp.server.url:http://localhost:8080/mcp}") String serverBaseUrl) {
+    public McpClient(JsonCodec jsonCodec,
+                     @Value("${mcp.server.url:http://localhost:8080/mcp}") String serverBaseUrl) {
         this.serverBaseUrl = serverBaseUrl;
-        this.objectMapper = new ObjectMapper();
+        this.jsonCodec = jsonCodec;
         this.httpClient = new OkHttpClient.Builder()
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(60, TimeUnit.SECONDS)
@@ -52,7 +53,7 @@ public class McpClient {
         
         List<McpTool> tools = new ArrayList<>();
         for (Map<String, Object> toolMap : toolsList) {
-            McpTool tool = objectMapper.convertValue(toolMap, McpTool.class);
+            McpTool tool = jsonCodec.mapper().convertValue(toolMap, McpTool.class);
             tools.add(tool);
         }
         
@@ -85,7 +86,7 @@ public class McpClient {
             if (structured != null) {
                 // Return structured JSON as string
                 try {
-                    return objectMapper.writeValueAsString(structured);
+                    return jsonCodec.mapper().writeValueAsString(structured);
                 } catch (JsonProcessingException e) {
                     // Fall through to text extraction
                 }
@@ -94,7 +95,7 @@ public class McpClient {
             if (result.containsKey("journey_type") || result.containsKey("entity_profile")) {
                 // All required fields are at root level, return the full result
                 try {
-                    return objectMapper.writeValueAsString(result);
+                    return jsonCodec.mapper().writeValueAsString(result);
                 } catch (JsonProcessingException e) {
                     // Fall through to text extraction
                 }
@@ -127,9 +128,7 @@ public class McpClient {
     public Map<String, Object> callRunKYBTool(String customerId) throws IOException {
         String resultJson = callTool("runKYB", Map.of("customerId", customerId));
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> result = objectMapper.readValue(resultJson, Map.class);
-            return result;
+            return jsonCodec.readMap(resultJson);
         } catch (JsonProcessingException e) {
             throw new IOException("Error parsing runKYB result", e);
         }
@@ -138,7 +137,7 @@ public class McpClient {
     private McpMessage sendMessage(McpMessage request) throws IOException {
         String jsonRequest;
         try {
-            jsonRequest = objectMapper.writeValueAsString(request);
+            jsonRequest = jsonCodec.writeMessage(request);
         } catch (JsonProcessingException e) {
             throw new IOException("Error serializing request", e);
         }
@@ -161,7 +160,7 @@ public class McpClient {
             
             String responseBody = response.body().string();
             try {
-                return objectMapper.readValue(responseBody, McpMessage.class);
+                return jsonCodec.readMessage(responseBody);
             } catch (JsonProcessingException e) {
                 throw new IOException("Error deserializing response", e);
             }
@@ -1,7 +1,7 @@
 package com.mcpkyb.mcp.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.service.ReferenceDataStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -14,6 +14,9 @@ public class McpOrchestratorAgent {
     
     @Autowired
     private McpClient mcpClient;
+
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
     
     public Map<String, Object> runKYB(String customerId) throws IOException {
         // Initialize MCP connection
@@ -33,17 +36,11 @@ public class McpOrchestratorAgent {
 
         // Add organization_structure from crm.json
         try {
-            JsonNode crmData = JsonLoader.loadJson("crm.json");
-            JsonNode customers = crmData.get("customers");
-            if (customers != null && customers.isArray()) {
-                for (JsonNode customer : customers) {
-                    if (customerId.equals(customer.get("customer_id").asText())) {
-                        JsonNode orgStructure = customer.get("organization_structure");
-                        if (orgStructure != null) {
-                            result.put("organization_structure", orgStructure.asText());
-                        }
-                        break;
-                    }
+            JsonNode customer = referenceDataStore.findCustomer(customerId);
+            if (customer != null) {
+                JsonNode orgStructure = customer.get("organization_structure");
+                if (orgStructure != null) {
+                    result.put("organization_structure", orgStructure.asText());
                 }
             }
         } catch (Exception e) {
@@ -1,7 +1,7 @@
 package com.mcpkyb.mcp.server;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mcpkyb.mcp.model.McpMessage;
+import com.mcpkyb.utils.JsonCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,7 +17,8 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequestMapping("/mcp")
 public class McpServerController {
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private JsonCodec jsonCodec;
     
     @Autowired
     private McpServerService mcpServerService;
@@ -67,7 +68,7 @@ public class McpServerController {
     public ResponseEntity<Map<String, String>> sendSseMessage(@RequestBody McpMessage request) {
         try {
             McpMessage response = mcpServerService.handleMessage(request);
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = jsonCodec.writeMessage(response);
             
             // Send to all connected emitters
             emitters.values().forEach(emitter -> {
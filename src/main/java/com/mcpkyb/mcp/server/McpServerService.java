@@ -2,12 +2,12 @@ package com.mcpkyb.mcp.server;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.mcpkyb.mcp.model.*;
+import com.mcpkyb.rules.RulesRepository;
 import com.mcpkyb.service.*;
-import com.mcpkyb.utils.JsonLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.utils.JsonCodec;
 
 import java.io.IOException;
 import java.util.*;
@@ -38,6 +38,15 @@ public class McpServerService {
 
     @Autowired
     private SentimentAnalysisAgent sentimentAnalysisAgent;
+
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
+
+    @Autowired
+    private RulesRepository rulesRepository;
+
+    @Autowired
+    private JsonCodec jsonCodec;
     
     public List<McpTool> listTools() {
         List<McpTool> tools = new ArrayList<>();
@@ -191,7 +200,7 @@ public class McpServerService {
                     if (profileSummary == null || transactionSummary == null) {
                         throw new IllegalArgumentException("profileSummary and transactionSummary are required");
                     }
-                    return riskAgent.assessRisk(profileSummary, transactionSummary, JsonLoader.loadJson("rules.json"));
+                    return riskAgent.assessRisk(profileSummary, transactionSummary, rulesRepository.current().raw());
                     
                 case "generateKYBNote":
                     profileSummary = (String) arguments.get("profileSummary");
@@ -217,15 +226,9 @@ public class McpServerService {
                     if (customerId == null) {
                         throw new IllegalArgumentException("customerId is required");
                     }
-                    // Call ConductorAgent which orchestrates the complete workflow
-                    Map<String, Object> kybResult = conductorAgent.runKYB(customerId);
-                    // Return the complete structured result as JSON string
-                    com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                    try {
-                        return mapper.writeValueAsString(kybResult);
-                    } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
-                        throw new RuntimeException("Error serializing KYB result", e);
-                    }
+                    // Call ConductorAgent which orchestrates the complete workflow; the structured
+                    // result is serialized once, with the MCP response
+                    return conductorAgent.runKYB(customerId);
 
                 case "assessRiskScopeAndActions":
                     customerId = (String) arguments.get("customerId");
@@ -237,7 +240,7 @@ public class McpServerService {
                     Map<String, Object> experianData = getExperianData(customerId);
                     Map<String, Object> crmData = getCrmData(customerId);
                     Map<String, Object> transactionData = getTransactionData(customerId);
-                    JsonNode rulesData = JsonLoader.loadJson("rules.json");
+                    JsonNode rulesData = rulesRepository.current().raw();
 
                     return riskScopeActionsAgent.assessRiskScopeAndActions(
                         companiesHouseData, experianData, crmData, transactionData, rulesData
@@ -292,11 +295,14 @@ public class McpServerService {
                     if ("searchCompanyHouse".equals(name) && result instanceof List) {
                         // Handle searchCompanyHouse tool - return structured data directly
                         toolResult.put("companies", result);
-                    } else if (("runKYB".equals(name) || "assessRiskScopeAndActions".equals(name)) && result instanceof String) {
+                    } else if ("runKYB".equals(name) && result instanceof Map<?, ?> kybResult) {
+                        // Include full structured result at root level for easy access
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> structured = (Map<String, Object>) kybResult;
+                        toolResult.putAll(structured);
+                    } else if ("assessRiskScopeAndActions".equals(name) && result instanceof String) {
                         try {
-                            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> jsonResult = mapper.readValue((String) result, Map.class);
+                            Map<String, Object> jsonResult = jsonCodec.readMap((String) result);
 
                             // Include full structured result at root level for easy access
                             // This allows MCP clients to get the complete structured output directly
@@ -349,75 +355,38 @@ public class McpServerService {
         return response;
     }
 
-    @SuppressWarnings("unchecked")
     private Map<String, Object> getCompaniesHouseData(String customerId) {
-        try {
-            JsonNode companiesHouseJson = JsonLoader.loadJson("companyHouse.json");
-            JsonNode businesses = companiesHouseJson.get("businesses");
-            if (businesses != null && businesses.isArray()) {
-                for (JsonNode business : businesses) {
-                    if (customerId.equals(business.get("customer_id").asText())) {
-                        return new ObjectMapper().convertValue(business, Map.class);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Return empty map if data not found
+        JsonNode business = referenceDataStore.getBusiness(customerId);
+        if (business.isMissingNode()) {
+            return Map.of();
         }
-        return Map.of();
+        return jsonCodec.toMap(business);
     }
 
-    @SuppressWarnings("unchecked")
     private Map<String, Object> getExperianData(String customerId) {
-        try {
-            JsonNode companiesHouseJson = JsonLoader.loadJson("companyHouse.json");
-            JsonNode businesses = companiesHouseJson.get("businesses");
-            if (businesses != null && businesses.isArray()) {
-                for (JsonNode business : businesses) {
-                    if (customerId.equals(business.get("customer_id").asText())) {
-                        return new ObjectMapper().convertValue(business, Map.class);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Return empty map if data not found
+        JsonNode business = referenceDataStore.getBusiness(customerId);
+        if (business.isMissingNode()) {
+            return Map.of();
         }
-        return Map.of();
+        return jsonCodec.toMap(business);
     }
 
-    @SuppressWarnings("unchecked")
     private Map<String, Object> getCrmData(String customerId) {
-        try {
-            JsonNode crmJson = JsonLoader.loadJson("crm.json");
-            JsonNode customers = crmJson.get("customers");
-            if (customers != null && customers.isArray()) {
-                for (JsonNode customer : customers) {
-                    if (customerId.equals(customer.get("customer_id").asText())) {
-                        return new ObjectMapper().convertValue(customer, Map.class);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Return empty map if data not found
+        JsonNode customer = referenceDataStore.findCustomer(customerId);
+        if (customer == null) {
+            return Map.of();
         }
-        return Map.of();
+        return jsonCodec.toMap(customer);
     }
 
-    @SuppressWarnings("unchecked")
     private Map<String, Object> getTransactionData(String customerId) {
-        try {
-            JsonNode transactionsJson = JsonLoader.loadJson("transactions.json");
-            JsonNode customers = transactionsJson.get("customers");
-            if (customers != null && customers.has(customerId)) {
-                JsonNode customerData = customers.get(customerId);
-                Map<String, Object> result = new ObjectMapper().convertValue(customerData, Map.class);
-                result.put("customer_id", customerId);
-                return result;
-            }
-        } catch (Exception e) {
-            // Return empty map if data not found
+        JsonNode customerData = referenceDataStore.getTransactions(customerId);
+        if (customerData.isMissingNode()) {
+            return Map.of();
         }
-        return Map.of();
+        Map<String, Object> result = jsonCodec.toMap(customerData);
+        result.put("customer_id", customerId);
+        return result;
     }
 }
 
@@ -0,0 +1,66 @@
+package com.mcpkyb.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RiskRulesAgent's deterministic assessment: band and score, the triggers that fired and how the
+ * score was built up. Serializes to the risk_assessment shape of the runKYB result.
+ */
+public record RiskAssessment(@JsonProperty("risk_band") String riskBand,
+                             @JsonProperty("score") int score,
+                             @JsonProperty("journey_type") String journeyType,
+                             @JsonProperty("triggers_fired") List<TriggerFired> triggersFired,
+                             @JsonProperty("score_breakdown") ScoreBreakdown scoreBreakdown,
+                             @JsonProperty("overall_reasoning") String overallReasoning) {
+
+    public record TriggerFired(@JsonProperty("code") String code,
+                               @JsonProperty("severity") String severity,
+                               @JsonProperty("reason") String reason) {
+    }
+
+    public record TriggerImpact(@JsonProperty("code") String code,
+                                @JsonProperty("delta") int delta) {
+    }
+
+    public record ScoreBreakdown(@JsonProperty("base_score") int baseScore,
+                                 @JsonProperty("trigger_impacts") List<TriggerImpact> triggerImpacts) {
+    }
+
+    /**
+     * Mutable map form, for the runKYB result.
+     */
+    public Map<String, Object> toMap() {
+        List<Map<String, Object>> fired = new ArrayList<>(triggersFired.size());
+        for (TriggerFired trigger : triggersFired) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("code", trigger.code());
+            entry.put("severity", trigger.severity());
+            entry.put("reason", trigger.reason());
+            fired.add(entry);
+        }
+        List<Map<String, Object>> impacts = new ArrayList<>(scoreBreakdown.triggerImpacts().size());
+        for (TriggerImpact impact : scoreBreakdown.triggerImpacts()) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("code", impact.code());
+            entry.put("delta", impact.delta());
+            impacts.add(entry);
+        }
+        Map<String, Object> breakdown = new HashMap<>();
+        breakdown.put("base_score", scoreBreakdown.baseScore());
+        breakdown.put("trigger_impacts", impacts);
+
+        Map<String, Object> assessment = new HashMap<>();
+        assessment.put("risk_band", riskBand);
+        assessment.put("score", score);
+        assessment.put("journey_type", journeyType);
+        assessment.put("triggers_fired", fired);
+        assessment.put("score_breakdown", breakdown);
+        assessment.put("overall_reasoning", overallReasoning);
+        return assessment;
+    }
+}
@@ -0,0 +1,54 @@
+package com.mcpkyb.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TransactionPatternAgent's findings for one customer: a narrative summary, the triggers the
+ * latest month would fire and the (rounded) metrics they were evaluated on. Serializes to the
+ * transaction_insights shape of the runKYB result. supportingMetrics is null when there was
+ * nothing to analyse.
+ */
+public record TransactionInsights(@JsonProperty("summary") String summary,
+                                  @JsonProperty("candidate_triggers") List<String> candidateTriggers,
+                                  @JsonProperty("supporting_metrics") SupportingMetrics supportingMetrics) {
+
+    public record SupportingMetrics(@JsonProperty("intl_outward_change_pct") long intlOutwardChangePct,
+                                    @JsonProperty("high_risk_country_share_pct") long highRiskCountrySharePct,
+                                    @JsonProperty("cash_deposit_ratio_pct") long cashDepositRatioPct,
+                                    @JsonProperty("period_covered_months") int periodCoveredMonths,
+                                    @JsonProperty("latest_period") String latestPeriod) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("intl_outward_change_pct", intlOutwardChangePct);
+            metrics.put("high_risk_country_share_pct", highRiskCountrySharePct);
+            metrics.put("cash_deposit_ratio_pct", cashDepositRatioPct);
+            metrics.put("period_covered_months", periodCoveredMonths);
+            metrics.put("latest_period", latestPeriod);
+            return metrics;
+        }
+    }
+
+    /**
+     * Stand-in used when the transaction analysis did not run or did not finish in time.
+     */
+    public static TransactionInsights unavailable() {
+        return new TransactionInsights("Transaction analysis not available", List.of(), null);
+    }
+
+    /**
+     * Mutable map form, for the runKYB result.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> insights = new HashMap<>();
+        insights.put("summary", summary);
+        insights.put("candidate_triggers", new ArrayList<>(candidateTriggers));
+        insights.put("supporting_metrics", supportingMetrics != null ? supportingMetrics.toMap() : new HashMap<>());
+        return insights;
+    }
+}
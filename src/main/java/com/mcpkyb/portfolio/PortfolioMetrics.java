@@ -0,0 +1,181 @@
+package com.mcpkyb.portfolio;
+
+import com.mcpkyb.rules.CompiledRuleSet;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The per-customer inputs of rules-based risk scoring for the whole book, laid out as parallel
+ * primitive arrays (one slot per customer) so scoring can run in tight loops without touching
+ * JsonNode or Map instances.
+ *
+ * Internal risk ratings and sectors are dictionary-encoded: riskCodes[i] indexes riskLevels() and
+ * sectorCodes[i] indexes sectors(), so a rule set's base scores can be resolved once per distinct
+ * value instead of once per customer. Months since the last KYB review are relative to asOf().
+ */
+public final class PortfolioMetrics {
+
+    /** monthsSinceReview value for customers with no parseable review date; never overdue. */
+    public static final int NO_REVIEW_DATE = CompiledRuleSet.NO_REVIEW_DATE;
+
+    private final LocalDate asOf;
+    private final String[] customerIds;
+    private final double[] intlChangePct;
+    private final double[] highRiskSharePct;
+    private final double[] cashRatioPct;
+    private final int[] riskCodes;
+    private final int[] sectorCodes;
+    private final int[] monthsSinceReview;
+    private final boolean[] hasTransactions;
+    private final List<String> riskLevels;
+    private final List<String> sectors;
+
+    private PortfolioMetrics(Builder builder) {
+        int size = builder.size;
+        this.asOf = builder.asOf;
+        this.customerIds = Arrays.copyOf(builder.customerIds, size);
+        this.intlChangePct = Arrays.copyOf(builder.intlChangePct, size);
+        this.highRiskSharePct = Arrays.copyOf(builder.highRiskSharePct, size);
+        this.cashRatioPct = Arrays.copyOf(builder.cashRatioPct, size);
+        this.riskCodes = Arrays.copyOf(builder.riskCodes, size);
+        this.sectorCodes = Arrays.copyOf(builder.sectorCodes, size);
+        this.monthsSinceReview = Arrays.copyOf(builder.monthsSinceReview, size);
+        this.hasTransactions = Arrays.copyOf(builder.hasTransactions, size);
+        this.riskLevels = List.copyOf(builder.riskLevels);
+        this.sectors = List.copyOf(builder.sectors);
+    }
+
+    public static Builder builder(LocalDate asOf, int expectedSize) {
+        return new Builder(asOf, expectedSize);
+    }
+
+    public LocalDate asOf() {
+        return asOf;
+    }
+
+    public int size() {
+        return customerIds.length;
+    }
+
+    public String customerId(int index) {
+        return customerIds[index];
+    }
+
+    public List<String> riskLevels() {
+        return riskLevels;
+    }
+
+    public List<String> sectors() {
+        return sectors;
+    }
+
+    public boolean hasTransactions(int index) {
+        return hasTransactions[index];
+    }
+
+    // Raw array accessors for the scorer's inner loops. Callers must not modify the arrays.
+
+    double[] intlChangePct() {
+        return intlChangePct;
+    }
+
+    double[] highRiskSharePct() {
+        return highRiskSharePct;
+    }
+
+    double[] cashRatioPct() {
+        return cashRatioPct;
+    }
+
+    int[] riskCodes() {
+        return riskCodes;
+    }
+
+    int[] sectorCodes() {
+        return sectorCodes;
+    }
+
+    int[] monthsSinceReview() {
+        return monthsSinceReview;
+    }
+
+    /**
+     * Accumulates customers one at a time, growing the arrays as needed.
+     */
+    public static final class Builder {
+
+        private final LocalDate asOf;
+        private int size;
+        private String[] customerIds;
+        private double[] intlChangePct;
+        private double[] highRiskSharePct;
+        private double[] cashRatioPct;
+        private int[] riskCodes;
+        private int[] sectorCodes;
+        private int[] monthsSinceReview;
+        private boolean[] hasTransactions;
+        private final List<String> riskLevels = new ArrayList<>();
+        private final List<String> sectors = new ArrayList<>();
+        private final Map<String, Integer> riskLevelIndex = new HashMap<>();
+        private final Map<String, Integer> sectorIndex = new HashMap<>();
+
+        private Builder(LocalDate asOf, int expectedSize) {
+            this.asOf = asOf;
+            allocate(Math.max(16, expectedSize));
+        }
+
+        /**
+         * Adds a customer. Transaction percentages should already be rounded the way the
+         * single-customer workflow rounds them; pass hasTransactions=false (and zeros) when the
+         * customer has no usable transaction history.
+         */
+        public Builder add(String customerId,
+                           String riskLevelUpper,
+                           String sector,
+                           int monthsSinceReview,
+                           boolean hasTransactions,
+                           double intlChangePct,
+                           double highRiskSharePct,
+                           double cashRatioPct) {
+            if (size == customerIds.length) {
+                allocate(size * 2);
+            }
+            this.customerIds[size] = customerId;
+            this.riskCodes[size] = riskLevelIndex.computeIfAbsent(riskLevelUpper, level -> {
+                riskLevels.add(level);
+                return riskLevels.size() - 1;
+            });
+            this.sectorCodes[size] = sectorIndex.computeIfAbsent(sector, name -> {
+                sectors.add(name);
+                return sectors.size() - 1;
+            });
+            this.monthsSinceReview[size] = monthsSinceReview;
+            this.hasTransactions[size] = hasTransactions;
+            this.intlChangePct[size] = intlChangePct;
+            this.highRiskSharePct[size] = highRiskSharePct;
+            this.cashRatioPct[size] = cashRatioPct;
+            size++;
+            return this;
+        }
+
+        public PortfolioMetrics build() {
+            return new PortfolioMetrics(this);
+        }
+
+        private void allocate(int capacity) {
+            customerIds = customerIds == null ? new String[capacity] : Arrays.copyOf(customerIds, capacity);
+            intlChangePct = intlChangePct == null ? new double[capacity] : Arrays.copyOf(intlChangePct, capacity);
+            highRiskSharePct = highRiskSharePct == null ? new double[capacity] : Arrays.copyOf(highRiskSharePct, capacity);
+            cashRatioPct = cashRatioPct == null ? new double[capacity] : Arrays.copyOf(cashRatioPct, capacity);
+            riskCodes = riskCodes == null ? new int[capacity] : Arrays.copyOf(riskCodes, capacity);
+            sectorCodes = sectorCodes == null ? new int[capacity] : Arrays.copyOf(sectorCodes, capacity);
+            monthsSinceReview = monthsSinceReview == null ? new int[capacity] : Arrays.copyOf(monthsSinceReview, capacity);
+            hasTransactions = hasTransactions == null ? new boolean[capacity] : Arrays.copyOf(hasTransactions, capacity);
+        }
+    }
+}
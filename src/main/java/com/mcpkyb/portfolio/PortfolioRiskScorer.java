@@ -0,0 +1,191 @@
+package com.mcpkyb.portfolio;
+
+import com.mcpkyb.rules.CompiledRuleSet;
+import com.mcpkyb.rules.TriggerCode;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Applies RiskRulesAgent's deterministic scoring to every customer of a PortfolioMetrics at once.
+ *
+ * Everything that depends only on the rule set (base score per risk level and sector, sector
+ * trigger, review limit per risk level, the score-to-band table) is resolved before the loop, so
+ * the per-customer work is a handful of array reads and compares. Large books are split into
+ * fixed-size chunks scored in parallel on the common fork-join pool; each chunk writes a disjoint
+ * slice of the output arrays.
+ */
+public final class PortfolioRiskScorer {
+
+    static final int CHUNK_SIZE = 16_384;
+
+    /** Widest score range that gets a precomputed band table; wider ranges look up per customer. */
+    private static final int MAX_BAND_TABLE_SIZE = 1 << 16;
+
+    private static final int SECTOR_BIT = 1 << TriggerCode.TRIG_SECTOR_HIGH_RISK.ordinal();
+    private static final int OVERDUE_BIT = 1 << TriggerCode.TRIG_KYB_OVERDUE.ordinal();
+    private static final int INTL_BIT = 1 << TriggerCode.TRIG_INTL_SPIKE.ordinal();
+    private static final int HIGH_RISK_COUNTRY_BIT = 1 << TriggerCode.TRIG_HIGH_RISK_COUNTRY.ordinal();
+    private static final int CASH_BIT = 1 << TriggerCode.TRIG_CASH_HEAVY.ordinal();
+
+    private PortfolioRiskScorer() {
+    }
+
+    public static PortfolioScores score(PortfolioMetrics metrics, CompiledRuleSet rules) {
+        Plan plan = new Plan(metrics, rules);
+        int size = metrics.size();
+        int[] scores = new int[size];
+        byte[] bandOrdinals = new byte[size];
+        byte[] triggerMasks = new byte[size];
+
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks <= 1) {
+            scoreRange(plan, metrics, 0, size, scores, bandOrdinals, triggerMasks);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int from = chunk * CHUNK_SIZE;
+                int to = Math.min(size, from + CHUNK_SIZE);
+                scoreRange(plan, metrics, from, to, scores, bandOrdinals, triggerMasks);
+            });
+        }
+        return new PortfolioScores(scores, bandOrdinals, triggerMasks, rules.bandLabels());
+    }
+
+    private static void scoreRange(Plan plan,
+                                   PortfolioMetrics metrics,
+                                   int from,
+                                   int to,
+                                   int[] scores,
+                                   byte[] bandOrdinals,
+                                   byte[] triggerMasks) {
+        int[] riskCodes = metrics.riskCodes();
+        int[] sectorCodes = metrics.sectorCodes();
+        int[] monthsSinceReview = metrics.monthsSinceReview();
+        double[] intlChangePct = metrics.intlChangePct();
+        double[] highRiskSharePct = metrics.highRiskSharePct();
+        double[] cashRatioPct = metrics.cashRatioPct();
+
+        int[] baseScores = plan.baseScores;
+        boolean[] highRiskSector = plan.highRiskSector;
+        int[] reviewLimits = plan.reviewLimits;
+        int sectorCount = plan.sectorCount;
+
+        for (int i = from; i < to; i++) {
+            int risk = riskCodes[i];
+            int sector = sectorCodes[i];
+            int score = baseScores[risk * sectorCount + sector];
+            int mask = 0;
+
+            if (highRiskSector[sector]) {
+                score += plan.sectorImpact;
+                mask |= SECTOR_BIT;
+            }
+            if (monthsSinceReview[i] > reviewLimits[risk]) {
+                score += plan.overdueImpact;
+                mask |= OVERDUE_BIT;
+            }
+            if (intlChangePct[i] > plan.intlThreshold) {
+                score += plan.intlImpact;
+                mask |= INTL_BIT;
+            }
+            if (highRiskSharePct[i] > plan.highRiskShareThreshold) {
+                score += plan.highRiskCountryImpact;
+                mask |= HIGH_RISK_COUNTRY_BIT;
+            }
+            if (cashRatioPct[i] > plan.cashThreshold) {
+                score += plan.cashImpact;
+                mask |= CASH_BIT;
+            }
+
+            scores[i] = score;
+            triggerMasks[i] = (byte) mask;
+            bandOrdinals[i] = plan.bandOrdinal(score);
+        }
+    }
+
+    /**
+     * Rule-set lookups resolved against the metrics' risk level and sector dictionaries.
+     */
+    private static final class Plan {
+
+        final CompiledRuleSet rules;
+        final int sectorCount;
+        final int[] baseScores;
+        final boolean[] highRiskSector;
+        final int[] reviewLimits;
+
+        final double intlThreshold;
+        final double highRiskShareThreshold;
+        final double cashThreshold;
+        final int sectorImpact;
+        final int overdueImpact;
+        final int intlImpact;
+        final int highRiskCountryImpact;
+        final int cashImpact;
+
+        final int bandTableOffset;
+        final byte[] bandTable;
+
+        Plan(PortfolioMetrics metrics, CompiledRuleSet rules) {
+            this.rules = rules;
+            List<String> riskLevels = metrics.riskLevels();
+            List<String> sectors = metrics.sectors();
+            this.sectorCount = Math.max(1, sectors.size());
+
+            this.baseScores = new int[Math.max(1, riskLevels.size()) * sectorCount];
+            this.reviewLimits = new int[Math.max(1, riskLevels.size())];
+            int minBase = Integer.MAX_VALUE;
+            int maxBase = Integer.MIN_VALUE;
+            for (int r = 0; r < riskLevels.size(); r++) {
+                reviewLimits[r] = rules.reviewLimitMonths("HIGH".equalsIgnoreCase(riskLevels.get(r)));
+                for (int s = 0; s < sectors.size(); s++) {
+                    int base = rules.baseScore(riskLevels.get(r), sectors.get(s));
+                    baseScores[r * sectorCount + s] = base;
+                    minBase = Math.min(minBase, base);
+                    maxBase = Math.max(maxBase, base);
+                }
+            }
+            this.highRiskSector = new boolean[sectorCount];
+            for (int s = 0; s < sectors.size(); s++) {
+                highRiskSector[s] = rules.isHighRiskSector(sectors.get(s));
+            }
+
+            this.intlThreshold = rules.intlSpikeThresholdPct();
+            this.highRiskShareThreshold = rules.highRiskShareThresholdPct();
+            this.cashThreshold = rules.cashRatioThresholdPct();
+            this.sectorImpact = rules.impact(TriggerCode.TRIG_SECTOR_HIGH_RISK);
+            this.overdueImpact = rules.impact(TriggerCode.TRIG_KYB_OVERDUE);
+            this.intlImpact = rules.impact(TriggerCode.TRIG_INTL_SPIKE);
+            this.highRiskCountryImpact = rules.impact(TriggerCode.TRIG_HIGH_RISK_COUNTRY);
+            this.cashImpact = rules.impact(TriggerCode.TRIG_CASH_HEAVY);
+
+            long lowest = minBase;
+            long highest = maxBase;
+            for (TriggerCode code : TriggerCode.values()) {
+                int impact = rules.impact(code);
+                if (impact < 0) {
+                    lowest += impact;
+                } else {
+                    highest += impact;
+                }
+            }
+            if (minBase <= maxBase && highest - lowest < MAX_BAND_TABLE_SIZE) {
+                this.bandTableOffset = (int) lowest;
+                this.bandTable = new byte[(int) (highest - lowest + 1)];
+                for (int i = 0; i < bandTable.length; i++) {
+                    bandTable[i] = (byte) rules.bandOrdinal(bandTableOffset + i);
+                }
+            } else {
+                this.bandTableOffset = 0;
+                this.bandTable = null;
+            }
+        }
+
+        byte bandOrdinal(int score) {
+            if (bandTable != null) {
+                return bandTable[score - bandTableOffset];
+            }
+            return (byte) rules.bandOrdinal(score);
+        }
+    }
+}
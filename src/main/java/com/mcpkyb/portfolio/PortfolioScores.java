@@ -0,0 +1,96 @@
+package com.mcpkyb.portfolio;
+
+import com.mcpkyb.rules.TriggerCode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules-based scores for a whole book, index-aligned with the PortfolioMetrics they came from.
+ *
+ * Each customer costs an int score, a band ordinal into bandLabels() and a trigger bitmask with
+ * one bit per TriggerCode ordinal.
+ */
+public final class PortfolioScores {
+
+    private final int[] scores;
+    private final byte[] bandOrdinals;
+    private final byte[] triggerMasks;
+    private final List<String> bandLabels;
+
+    PortfolioScores(int[] scores, byte[] bandOrdinals, byte[] triggerMasks, List<String> bandLabels) {
+        this.scores = scores;
+        this.bandOrdinals = bandOrdinals;
+        this.triggerMasks = triggerMasks;
+        this.bandLabels = bandLabels;
+    }
+
+    public int size() {
+        return scores.length;
+    }
+
+    public int score(int index) {
+        return scores[index];
+    }
+
+    public String band(int index) {
+        return bandLabels.get(bandOrdinals[index]);
+    }
+
+    public int bandOrdinal(int index) {
+        return bandOrdinals[index];
+    }
+
+    public List<String> bandLabels() {
+        return bandLabels;
+    }
+
+    public boolean fired(int index, TriggerCode code) {
+        return (triggerMasks[index] & (1 << code.ordinal())) != 0;
+    }
+
+    public List<String> triggers(int index) {
+        List<String> fired = new ArrayList<>();
+        for (TriggerCode code : TriggerCode.values()) {
+            if (fired(index, code)) {
+                fired.add(code.name());
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Number of customers in each band, in bandLabels() order.
+     */
+    public Map<String, Integer> bandCounts() {
+        int[] counts = new int[bandLabels.size()];
+        for (byte ordinal : bandOrdinals) {
+            counts[ordinal]++;
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            result.put(bandLabels.get(i), counts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Number of customers each trigger fired for.
+     */
+    public Map<String, Integer> triggerCounts() {
+        TriggerCode[] codes = TriggerCode.values();
+        int[] counts = new int[codes.length];
+        for (byte mask : triggerMasks) {
+            for (int bit = 0; bit < codes.length; bit++) {
+                counts[bit] += (mask >>> bit) & 1;
+            }
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (TriggerCode code : codes) {
+            result.put(code.name(), counts[code.ordinal()]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,258 @@
+package com.mcpkyb.portfolio;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcpkyb.rules.CompiledRuleSet;
+import com.mcpkyb.rules.RulesRepository;
+import com.mcpkyb.service.ReferenceDataStore;
+import com.mcpkyb.service.TransactionPatternAgent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-book, rules-only risk scoring.
+ *
+ * The scoring inputs for every customer (CRM risk rating, sector and last review date plus the
+ * transaction metrics TransactionPatternAgent computes) are extracted once into PortfolioMetrics
+ * and reused until the date changes, so re-scoring after a rules change is just a
+ * PortfolioRiskScorer pass. No LLM calls are made; CRM values stand in for the LLM-built entity
+ * profile the single-customer workflow scores.
+ */
+@Service
+public class PortfolioService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortfolioService.class);
+
+    private final ReferenceDataStore referenceDataStore;
+    private final TransactionPatternAgent transactionPatternAgent;
+    private final RulesRepository rulesRepository;
+
+    private final Timer metricsBuildTimer;
+    private final Timer scoringTimer;
+
+    private volatile PortfolioMetrics metrics;
+
+    public PortfolioService(ReferenceDataStore referenceDataStore,
+                            TransactionPatternAgent transactionPatternAgent,
+                            RulesRepository rulesRepository,
+                            MeterRegistry meterRegistry) {
+        this.referenceDataStore = referenceDataStore;
+        this.transactionPatternAgent = transactionPatternAgent;
+        this.rulesRepository = rulesRepository;
+
+        this.metricsBuildTimer = Timer.builder("kyb.portfolio.metrics_build")
+                .description("Time to extract scoring inputs for the whole book")
+                .register(meterRegistry);
+        this.scoringTimer = Timer.builder("kyb.portfolio.scoring")
+                .description("Time to score the whole book against a rule set")
+                .register(meterRegistry);
+        Gauge.builder("kyb.portfolio.customers", this, service -> service.metrics != null ? service.metrics.size() : 0)
+                .description("Customers in the cached portfolio scoring inputs")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the scoring inputs for the whole book, rebuilding them on first use and when the
+     * date has moved on (months since review are date-relative).
+     */
+    public PortfolioMetrics metrics() {
+        PortfolioMetrics current = metrics;
+        LocalDate today = LocalDate.now();
+        if (current != null && current.asOf().equals(today)) {
+            return current;
+        }
+        synchronized (this) {
+            if (metrics == null || !metrics.asOf().equals(today)) {
+                metrics = metricsBuildTimer.record(() -> buildMetrics(today));
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * Scores the whole book against the given rule set.
+     */
+    public PortfolioScores score(CompiledRuleSet rules) {
+        PortfolioMetrics portfolio = metrics();
+        return scoringTimer.record(() -> PortfolioRiskScorer.score(portfolio, rules));
+    }
+
+    /**
+     * Scores the whole book against the active rules and summarises the result.
+     */
+    public Map<String, Object> scoreActiveRules(boolean includeCustomers) {
+        RulesRepository.VersionedRules rules = rulesRepository.current();
+        PortfolioMetrics portfolio = metrics();
+
+        long startNanos = System.nanoTime();
+        PortfolioScores scores = score(rules.compiled());
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        int withoutTransactions = 0;
+        for (int i = 0; i < portfolio.size(); i++) {
+            if (!portfolio.hasTransactions(i)) {
+                withoutTransactions++;
+            }
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("rules_version", rules.version());
+        summary.put("as_of", portfolio.asOf().toString());
+        summary.put("customers", portfolio.size());
+        summary.put("customers_without_transactions", withoutTransactions);
+        summary.put("band_counts", scores.bandCounts());
+        summary.put("trigger_counts", scores.triggerCounts());
+        summary.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+        summary.put("customers_per_sec", elapsedSeconds > 0 ? portfolio.size() / elapsedSeconds : 0);
+
+        if (includeCustomers) {
+            List<Map<String, Object>> customers = new ArrayList<>(portfolio.size());
+            for (int i = 0; i < portfolio.size(); i++) {
+                Map<String, Object> customer = new HashMap<>();
+                customer.put("customer_id", portfolio.customerId(i));
+                customer.put("score", scores.score(i));
+                customer.put("risk_band", scores.band(i));
+                customer.put("triggers_fired", scores.triggers(i));
+                customers.add(customer);
+            }
+            summary.put("results", customers);
+        }
+        return summary;
+    }
+
+    /**
+     * Re-scores the whole book under both the active rules and a candidate rule set and reports how
+     * customers would move between bands. Deterministic and LLM-free; the candidate must already
+     * have passed CompiledRuleSet.validate().
+     */
+    public Map<String, Object> backtest(JsonNode candidateRules, int maxChangedCustomers) {
+        RulesRepository.VersionedRules active = rulesRepository.current();
+        CompiledRuleSet candidate = CompiledRuleSet.compile(candidateRules);
+        PortfolioMetrics portfolio = metrics();
+
+        long startNanos = System.nanoTime();
+        PortfolioScores before = score(active.compiled());
+        PortfolioScores after = score(candidate);
+
+        List<String> labels = new ArrayList<>(before.bandLabels());
+        for (String label : after.bandLabels()) {
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+        }
+        // Map each rule set's band ordinals onto the shared label list once, outside the loop
+        int[] beforeIndex = labelIndex(before.bandLabels(), labels);
+        int[] afterIndex = labelIndex(after.bandLabels(), labels);
+
+        int[][] matrix = new int[labels.size()][labels.size()];
+        List<Map<String, Object>> changed = new ArrayList<>();
+        int changedTotal = 0;
+        int scoreChangedTotal = 0;
+        for (int i = 0; i < portfolio.size(); i++) {
+            int from = beforeIndex[before.bandOrdinal(i)];
+            int to = afterIndex[after.bandOrdinal(i)];
+            matrix[from][to]++;
+            if (before.score(i) != after.score(i)) {
+                scoreChangedTotal++;
+            }
+            if (from != to) {
+                changedTotal++;
+                if (changed.size() < maxChangedCustomers) {
+                    Map<String, Object> customer = new HashMap<>();
+                    customer.put("customer_id", portfolio.customerId(i));
+                    customer.put("from_band", labels.get(from));
+                    customer.put("to_band", labels.get(to));
+                    customer.put("from_score", before.score(i));
+                    customer.put("to_score", after.score(i));
+                    customer.put("from_triggers", before.triggers(i));
+                    customer.put("to_triggers", after.triggers(i));
+                    changed.add(customer);
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        Map<String, Map<String, Integer>> migration = new LinkedHashMap<>();
+        for (int from = 0; from < labels.size(); from++) {
+            Map<String, Integer> row = new LinkedHashMap<>();
+            for (int to = 0; to < labels.size(); to++) {
+                row.put(labels.get(to), matrix[from][to]);
+            }
+            migration.put(labels.get(from), row);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("baseline_rules_version", active.version());
+        result.put("as_of", portfolio.asOf().toString());
+        result.put("customers", portfolio.size());
+        result.put("baseline_band_counts", before.bandCounts());
+        result.put("candidate_band_counts", after.bandCounts());
+        result.put("baseline_trigger_counts", before.triggerCounts());
+        result.put("candidate_trigger_counts", after.triggerCounts());
+        result.put("band_migration", migration);
+        result.put("band_changed_total", changedTotal);
+        result.put("score_changed_total", scoreChangedTotal);
+        result.put("changed_customers", changed);
+        result.put("changed_customers_truncated", changedTotal > changed.size());
+        result.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+
+        logger.info("Rules backtest against version {} - customers: {}, band changes: {}, elapsed: {}ms",
+                active.version(), portfolio.size(), changedTotal, result.get("elapsed_ms"));
+        return result;
+    }
+
+    private static int[] labelIndex(List<String> ruleSetLabels, List<String> sharedLabels) {
+        int[] index = new int[ruleSetLabels.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = sharedLabels.indexOf(ruleSetLabels.get(i));
+        }
+        return index;
+    }
+
+    private PortfolioMetrics buildMetrics(LocalDate today) {
+        PortfolioMetrics.Builder builder = PortfolioMetrics.builder(today, referenceDataStore.getCustomers().size());
+        int withoutTransactions = 0;
+        for (JsonNode customer : referenceDataStore.getCustomers()) {
+            String customerId = customer.path("customer_id").asText();
+            String riskLevel = customer.path("internal_risk_rating").asText("MEDIUM").toUpperCase(Locale.ROOT);
+            String sector = customer.path("sector").asText("UNKNOWN");
+            int monthsSinceReview = CompiledRuleSet.monthsSinceReview(customer.path("kyb_last_review_date").asText(""), today);
+
+            boolean hasTransactions = true;
+            double intlChangePct = 0;
+            double highRiskSharePct = 0;
+            double cashRatioPct = 0;
+            try {
+                TransactionPatternAgent.TransactionMetrics tx = transactionPatternAgent.computeMetrics(customerId);
+                // RiskRulesAgent compares the rounded supporting_metrics values, so round the same way
+                intlChangePct = Math.round(tx.intlChangePct());
+                highRiskSharePct = Math.round(tx.highRiskSharePct());
+                cashRatioPct = Math.round(tx.cashRatioPct());
+            } catch (IOException | RuntimeException e) {
+                hasTransactions = false;
+                withoutTransactions++;
+            }
+
+            builder.add(customerId, riskLevel, sector, monthsSinceReview, hasTransactions,
+                    intlChangePct, highRiskSharePct, cashRatioPct);
+        }
+        PortfolioMetrics built = builder.build();
+        logger.info("Portfolio scoring inputs built - customers: {}, without transaction history: {}, as of {}",
+                built.size(), withoutTransactions, today);
+        return built;
+    }
+}
@@ -0,0 +1,342 @@
+package com.mcpkyb.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * rules.json compiled into typed, immutable lookup structures.
+ *
+ * Compiling walks the JSON tree once; evaluation is then field reads, array indexing by
+ * TriggerCode ordinal and a single hash probe per sector, so the rule set can be shared by every
+ * assessment without re-reading the JsonNode. Defaults match the ones RiskRulesAgent has always
+ * applied when a rule is missing from the file.
+ */
+public final class CompiledRuleSet {
+
+    private static final String DEFAULT_BAND = "AMBER";
+    private static final String DEFAULT_SEVERITY = "MEDIUM";
+    private static final int DEFAULT_BASE_SCORE = 20;
+
+    /** monthsSinceReview result for a blank or unparseable review date; never overdue. */
+    public static final int NO_REVIEW_DATE = Integer.MIN_VALUE;
+
+    // CRM review dates come as yyyy-MM or yyyy-MM-dd
+    private static final DateTimeFormatter REVIEW_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM[-dd]");
+
+    /**
+     * Widest score range that gets a direct score-to-band table; anything wider falls back to
+     * scanning the band list.
+     */
+    private static final int MAX_BAND_TABLE_SIZE = 4096;
+
+    private final double intlSpikeThresholdPct;
+    private final double highRiskShareThresholdPct;
+    private final double cashRatioThresholdPct;
+    private final int reviewMonthsHighRisk;
+    private final int reviewMonthsOthers;
+
+    private final int[] triggerImpacts;
+    private final String[] triggerSeverities;
+
+    private final Map<String, String> sectorRisk;
+    private final Map<String, Integer> baseScores;
+
+    private final int[] bandMin;
+    private final int[] bandMax;
+    private final String[] bandNames;
+    private final int bandTableOffset;
+    private final String[] bandTable;
+    private final List<String> bandLabels;
+
+    private CompiledRuleSet(JsonNode rules) {
+        JsonNode thresholds = rules.path("risk_thresholds");
+        this.intlSpikeThresholdPct = thresholds.path("intl_outward_mom_spike_pct").asDouble(100);
+        this.highRiskShareThresholdPct = thresholds.path("high_risk_country_volume_ratio").asDouble(0.05) * 100;
+        this.cashRatioThresholdPct = thresholds.path("cash_deposit_to_turnover_ratio").asDouble(0.30) * 100;
+        this.reviewMonthsHighRisk = thresholds.path("months_without_kyb_review_for_high_risk").asInt(12);
+        this.reviewMonthsOthers = thresholds.path("months_without_kyb_review_for_others").asInt(18);
+
+        JsonNode riskModel = rules.path("risk_scoring_model");
+        TriggerCode[] codes = TriggerCode.values();
+        this.triggerImpacts = new int[codes.length];
+        this.triggerSeverities = new String[codes.length];
+        Arrays.fill(triggerSeverities, DEFAULT_SEVERITY);
+        JsonNode impacts = riskModel.path("trigger_score_impacts");
+        for (TriggerCode code : codes) {
+            triggerImpacts[code.ordinal()] = impacts.path(code.name()).asInt(0);
+        }
+        for (JsonNode trigger : rules.path("kyb_review_triggers")) {
+            TriggerCode code = triggerCode(trigger.path("code").asText());
+            if (code != null) {
+                triggerSeverities[code.ordinal()] = trigger.path("severity").asText(DEFAULT_SEVERITY);
+            }
+        }
+
+        Map<String, String> sectors = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> sectorFields = rules.path("sector_risk").fields();
+        while (sectorFields.hasNext()) {
+            Map.Entry<String, JsonNode> field = sectorFields.next();
+            if (field.getValue().isNull()) {
+                continue;
+            }
+            sectors.put(field.getKey(), field.getValue().asText());
+        }
+        this.sectorRisk = Map.copyOf(sectors);
+
+        Map<String, Integer> scores = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> scoreFields = riskModel.path("base_scores").fields();
+        while (scoreFields.hasNext()) {
+            Map.Entry<String, JsonNode> field = scoreFields.next();
+            scores.put(field.getKey(), field.getValue().asInt(DEFAULT_BASE_SCORE));
+        }
+        this.baseScores = Map.copyOf(scores);
+
+        JsonNode bands = riskModel.path("bands");
+        int bandCount = bands.isArray() ? bands.size() : 0;
+        this.bandMin = new int[bandCount];
+        this.bandMax = new int[bandCount];
+        this.bandNames = new String[bandCount];
+        int lowest = Integer.MAX_VALUE;
+        int highest = Integer.MIN_VALUE;
+        for (int i = 0; i < bandCount; i++) {
+            JsonNode band = bands.get(i);
+            bandMin[i] = band.path("min_score").asInt();
+            bandMax[i] = band.path("max_score").asInt();
+            bandNames[i] = band.path("risk_band").asText(DEFAULT_BAND);
+            lowest = Math.min(lowest, bandMin[i]);
+            highest = Math.max(highest, bandMax[i]);
+        }
+
+        List<String> labels = new ArrayList<>();
+        for (String name : bandNames) {
+            if (!labels.contains(name)) {
+                labels.add(name);
+            }
+        }
+        if (!labels.contains(DEFAULT_BAND)) {
+            labels.add(DEFAULT_BAND);
+        }
+        this.bandLabels = List.copyOf(labels);
+
+        if (bandCount > 0 && highest >= lowest && (long) highest - lowest < MAX_BAND_TABLE_SIZE) {
+            this.bandTableOffset = lowest;
+            this.bandTable = new String[highest - lowest + 1];
+            for (int score = lowest; score <= highest; score++) {
+                bandTable[score - lowest] = scanBands(score);
+            }
+        } else {
+            this.bandTableOffset = 0;
+            this.bandTable = null;
+        }
+    }
+
+    /**
+     * Compiles a parsed rules.json document.
+     */
+    public static CompiledRuleSet compile(JsonNode rules) {
+        return new CompiledRuleSet(rules);
+    }
+
+    /**
+     * Checks a rules.json document for the structure the engine relies on, returning one message
+     * per problem (empty if the document is usable). Missing optional values still fall back to
+     * their defaults; this rejects values that are present but unusable.
+     */
+    public static List<String> validate(JsonNode rules) {
+        List<String> problems = new ArrayList<>();
+        if (rules == null || !rules.isObject()) {
+            problems.add("rules document must be a JSON object");
+            return problems;
+        }
+
+        JsonNode thresholds = rules.path("risk_thresholds");
+        if (!thresholds.isObject()) {
+            problems.add("risk_thresholds must be an object");
+        } else {
+            Iterator<Map.Entry<String, JsonNode>> fields = thresholds.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!field.getValue().isNumber() || field.getValue().asDouble() < 0) {
+                    problems.add("risk_thresholds." + field.getKey() + " must be a non-negative number");
+                }
+            }
+        }
+
+        JsonNode sectors = rules.path("sector_risk");
+        if (!sectors.isMissingNode() && !sectors.isObject()) {
+            problems.add("sector_risk must be an object");
+        }
+
+        JsonNode riskModel = rules.path("risk_scoring_model");
+        if (!riskModel.path("base_scores").isObject()) {
+            problems.add("risk_scoring_model.base_scores must be an object");
+        } else {
+            riskModel.path("base_scores").fields().forEachRemaining(field -> {
+                if (!field.getValue().isInt()) {
+                    problems.add("risk_scoring_model.base_scores." + field.getKey() + " must be an integer");
+                }
+            });
+        }
+
+        JsonNode impacts = riskModel.path("trigger_score_impacts");
+        if (!impacts.isMissingNode() && !impacts.isObject()) {
+            problems.add("risk_scoring_model.trigger_score_impacts must be an object");
+        } else {
+            impacts.fields().forEachRemaining(field -> {
+                if (!field.getValue().isInt()) {
+                    problems.add("risk_scoring_model.trigger_score_impacts." + field.getKey() + " must be an integer");
+                }
+            });
+        }
+
+        JsonNode bands = riskModel.path("bands");
+        if (!bands.isArray() || bands.isEmpty()) {
+            problems.add("risk_scoring_model.bands must be a non-empty array");
+        } else {
+            for (int i = 0; i < bands.size(); i++) {
+                JsonNode band = bands.get(i);
+                if (!band.path("min_score").isInt() || !band.path("max_score").isInt()) {
+                    problems.add("risk_scoring_model.bands[" + i + "] needs integer min_score and max_score");
+                } else if (band.path("min_score").asInt() > band.path("max_score").asInt()) {
+                    problems.add("risk_scoring_model.bands[" + i + "] has min_score above max_score");
+                }
+                if (!band.path("risk_band").isTextual()) {
+                    problems.add("risk_scoring_model.bands[" + i + "].risk_band must be a string");
+                }
+            }
+        }
+        return problems;
+    }
+
+    public double intlSpikeThresholdPct() {
+        return intlSpikeThresholdPct;
+    }
+
+    public double highRiskShareThresholdPct() {
+        return highRiskShareThresholdPct;
+    }
+
+    public double cashRatioThresholdPct() {
+        return cashRatioThresholdPct;
+    }
+
+    /**
+     * Months allowed between KYB reviews for the customer's internal risk rating.
+     */
+    public int reviewLimitMonths(boolean highRisk) {
+        return highRisk ? reviewMonthsHighRisk : reviewMonthsOthers;
+    }
+
+    /**
+     * True if a review monthsSinceReview months ago is past the limit for the risk rating.
+     */
+    public boolean isReviewOverdue(int monthsSinceReview, boolean highRisk) {
+        return monthsSinceReview != NO_REVIEW_DATE && monthsSinceReview > reviewLimitMonths(highRisk);
+    }
+
+    /**
+     * Whole months from a kyb_last_review_date to today, or NO_REVIEW_DATE if it is blank or not a
+     * date. A yyyy-MM date counts from the first of the month. The overdue trigger, portfolio
+     * scoring and the scheduler's HIGH class all read review dates through this, so they agree on
+     * who is overdue.
+     */
+    public static int monthsSinceReview(String reviewDate, LocalDate today) {
+        if (reviewDate == null || reviewDate.isBlank()) {
+            return NO_REVIEW_DATE;
+        }
+        try {
+            TemporalAccessor parsed = REVIEW_DATE_FORMAT.parse(reviewDate);
+            LocalDate date = parsed.isSupported(ChronoField.DAY_OF_MONTH)
+                    ? LocalDate.from(parsed)
+                    : YearMonth.from(parsed).atDay(1);
+            return (int) Period.between(date, today).toTotalMonths();
+        } catch (DateTimeException e) {
+            return NO_REVIEW_DATE;
+        }
+    }
+
+    public int impact(TriggerCode code) {
+        return triggerImpacts[code.ordinal()];
+    }
+
+    public String severity(TriggerCode code) {
+        return triggerSeverities[code.ordinal()];
+    }
+
+    /**
+     * Base score for a customer: the higher of the score for its internal rating and the score for
+     * its sector's risk level (which defaults to the internal rating for unlisted sectors).
+     */
+    public int baseScore(String internalRiskUpper, String sector) {
+        String sectorRiskLevel = sectorRisk.get(sector);
+        String sectorRiskUpper = sectorRiskLevel != null ? sectorRiskLevel.toUpperCase(Locale.ROOT) : internalRiskUpper;
+        int baseInternal = baseScores.getOrDefault(internalRiskUpper, DEFAULT_BASE_SCORE);
+        int baseSector = baseScores.getOrDefault(sectorRiskUpper, baseInternal);
+        return Math.max(baseInternal, baseSector);
+    }
+
+    public boolean isHighRiskSector(String sector) {
+        return "HIGH".equalsIgnoreCase(sectorRisk.getOrDefault(sector, "MEDIUM"));
+    }
+
+    /**
+     * Risk band for a total score; the first matching band in file order wins, AMBER if none match.
+     */
+    public String band(int score) {
+        if (bandTable != null) {
+            int index = score - bandTableOffset;
+            if (index < 0 || index >= bandTable.length) {
+                return DEFAULT_BAND;
+            }
+            return bandTable[index];
+        }
+        return scanBands(score);
+    }
+
+    /**
+     * Distinct band names, in file order, followed by the AMBER fallback if no band uses it.
+     * band(score) always returns one of these.
+     */
+    public List<String> bandLabels() {
+        return bandLabels;
+    }
+
+    /**
+     * Index into bandLabels() of band(score), for compact per-customer band storage.
+     */
+    public int bandOrdinal(int score) {
+        return bandLabels.indexOf(band(score));
+    }
+
+    private String scanBands(int score) {
+        for (int i = 0; i < bandNames.length; i++) {
+            if (score >= bandMin[i] && score <= bandMax[i]) {
+                return bandNames[i];
+            }
+        }
+        return DEFAULT_BAND;
+    }
+
+    private static TriggerCode triggerCode(String code) {
+        for (TriggerCode candidate : TriggerCode.values()) {
+            if (candidate.name().equals(code)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,249 @@
+package com.mcpkyb.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.utils.JsonLoader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the active rules.json.
+ *
+ * Rules are read from kyb.rules.path when set (falling back to the bundled classpath copy) and,
+ * with kyb.rules.watch enabled, the file is watched for changes. A changed file is parsed,
+ * validated and compiled off to the side and only then swapped in as a new version, so callers
+ * always see a complete rule set. A file that fails validation is logged and ignored; the
+ * previous version stays active.
+ *
+ * Callers that evaluate several rules in one request should take a single current() snapshot and
+ * use it throughout.
+ */
+@Service
+public class RulesRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(RulesRepository.class);
+
+    private static final String CLASSPATH_RULES = "rules.json";
+
+    private final ObjectMapper objectMapper;
+    private final Path rulesPath;
+    private final boolean watchEnabled;
+
+    private final AtomicReference<VersionedRules> current = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+
+    private final Counter reloadSuccessCounter;
+    private final Counter reloadRejectedCounter;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public RulesRepository(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${kyb.rules.path:}") String rulesPath,
+                           @Value("${kyb.rules.watch:true}") boolean watchEnabled) {
+        this.objectMapper = objectMapper;
+        this.rulesPath = rulesPath == null || rulesPath.isBlank() ? null : Path.of(rulesPath).toAbsolutePath();
+        this.watchEnabled = watchEnabled;
+
+        this.reloadSuccessCounter = Counter.builder("kyb.rules.reloads")
+                .description("rules.json reload attempts")
+                .tag("outcome", "applied")
+                .register(meterRegistry);
+        this.reloadRejectedCounter = Counter.builder("kyb.rules.reloads")
+                .description("rules.json reload attempts")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+
+        current.set(initialLoad());
+
+        Gauge.builder("kyb.rules.version", current, ref -> ref.get().version())
+                .description("Version number of the active rule set")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void startWatching() {
+        if (!watchEnabled || rulesPath == null || !Files.isDirectory(rulesPath.getParent())) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            rulesPath.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for rules changes: {}", rulesPath, e.getMessage());
+            return;
+        }
+        watcherThread = new Thread(this::watchLoop, "rules-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching {} for rules changes", rulesPath);
+    }
+
+    @PreDestroy
+    void stopWatching() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Returns the active rule set. The returned snapshot never changes.
+     */
+    public VersionedRules current() {
+        return current.get();
+    }
+
+    /**
+     * Re-reads the rules file and swaps it in if it is valid and its content has changed.
+     * Returns the rule set that is active afterwards.
+     */
+    public VersionedRules reload() {
+        synchronized (reloadLock) {
+            VersionedRules active = current.get();
+            if (rulesPath == null || !Files.exists(rulesPath)) {
+                return active;
+            }
+            JsonNode raw;
+            try {
+                raw = objectMapper.readTree(rulesPath.toFile());
+            } catch (IOException e) {
+                reloadRejectedCounter.increment();
+                logger.warn("Ignoring unreadable rules file {}: {}", rulesPath, e.getMessage());
+                return active;
+            }
+
+            String checksum = checksum(raw);
+            if (checksum.equals(active.checksum())) {
+                return active;
+            }
+
+            List<String> problems = CompiledRuleSet.validate(raw);
+            if (!problems.isEmpty()) {
+                reloadRejectedCounter.increment();
+                logger.warn("Rejected rules file {} - keeping version {}: {}", rulesPath, active.version(), problems);
+                return active;
+            }
+
+            CompiledRuleSet compiled;
+            try {
+                compiled = CompiledRuleSet.compile(raw);
+            } catch (RuntimeException e) {
+                reloadRejectedCounter.increment();
+                logger.warn("Rejected rules file {} - keeping version {}: {}", rulesPath, active.version(), e.toString());
+                return active;
+            }
+            VersionedRules next = new VersionedRules(active.version() + 1, raw, compiled,
+                    checksum, Instant.now(), rulesPath.toString());
+            current.set(next);
+            reloadSuccessCounter.increment();
+            logger.info("Rules version {} applied from {} (checksum {})", next.version(), rulesPath, checksum);
+            return next;
+        }
+    }
+
+    private VersionedRules initialLoad() {
+        try {
+            JsonNode raw;
+            String source;
+            if (rulesPath != null && Files.exists(rulesPath)) {
+                raw = objectMapper.readTree(rulesPath.toFile());
+                source = rulesPath.toString();
+            } else {
+                if (rulesPath != null) {
+                    logger.warn("Rules file {} not found, using bundled {}", rulesPath, CLASSPATH_RULES);
+                }
+                raw = JsonLoader.loadJson(CLASSPATH_RULES);
+                source = "classpath:" + CLASSPATH_RULES;
+            }
+            List<String> problems = CompiledRuleSet.validate(raw);
+            if (!problems.isEmpty()) {
+                throw new IllegalStateException("Invalid rules in " + source + ": " + problems);
+            }
+            VersionedRules rules = new VersionedRules(1, raw, CompiledRuleSet.compile(raw), checksum(raw),
+                    Instant.now(), source);
+            logger.info("Rules version {} loaded from {}", rules.version(), source);
+            return rules;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load KYB rules", e);
+        }
+    }
+
+    private void watchLoop() {
+        Path fileName = rulesPath.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        touched = true;
+                    }
+                }
+                key.reset();
+                if (touched) {
+                    // Editors often write in several steps; let the file settle before reading it
+                    Thread.sleep(200);
+                    try {
+                        reload();
+                    } catch (RuntimeException e) {
+                        // Keep watching: the next save may fix whatever broke this one
+                        reloadRejectedCounter.increment();
+                        logger.error("Rules reload from {} failed - keeping version {}", rulesPath, current.get().version(), e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private static String checksum(JsonNode node) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(node.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * One immutable version of the rules: the parsed document, its compiled form and a content
+     * checksum. raw must be treated as read-only.
+     */
+    public record VersionedRules(long version,
+                                 JsonNode raw,
+                                 CompiledRuleSet compiled,
+                                 String checksum,
+                                 Instant loadedAt,
+                                 String source) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.mcpkyb.rules;
+
+/**
+ * KYB review triggers evaluated by the rules engine, in the order RiskRulesAgent fires them.
+ */
+public enum TriggerCode {
+    TRIG_SECTOR_HIGH_RISK,
+    TRIG_KYB_OVERDUE,
+    TRIG_INTL_SPIKE,
+    TRIG_HIGH_RISK_COUNTRY,
+    TRIG_CASH_HEAVY
+}
@@ -2,7 +2,6 @@ package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.mcpkyb.mcp.client.CompaniesHouseClient;
-import com.mcpkyb.utils.JsonLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -15,21 +14,12 @@ public class CompanyHouseAgent {
     @Autowired
     private CompaniesHouseClient companiesHouseClient;
 
-    public List<JsonNode> searchCompanyByCustomerId(String customerId) throws IOException {
-        // Load CRM data and find the customer
-        JsonNode crmData = JsonLoader.loadJson("crm.json");
-        JsonNode customer = null;
-
-        for (JsonNode c : crmData.get("customers")) {
-            if (c.get("customer_id").asText().equals(customerId)) {
-                customer = c;
-                break;
-            }
-        }
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
 
-        if (customer == null) {
-            throw new IOException("Customer not found: " + customerId);
-        }
+    public List<JsonNode> searchCompanyByCustomerId(String customerId) throws IOException {
+        // Look up the customer in the CRM snapshot
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
 
         // Get the legal name to search for
         String legalName = customer.get("legal_name").asText();
@@ -1,16 +1,37 @@
 package com.mcpkyb.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.model.RiskAssessment;
+import com.mcpkyb.model.TransactionInsights;
+import com.mcpkyb.rules.RulesRepository;
+import com.mcpkyb.utils.JsonCodec;
+import com.mcpkyb.workflow.ExecutionPlan;
+import com.mcpkyb.workflow.WorkflowEngine;
+import com.mcpkyb.workflow.WorkflowRun;
+import com.mcpkyb.workflow.WorkflowStep;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class ConductorAgent {
 
+    // Step names usable as "agent" in workflow.json
+    static final String JOURNEY_STEP = "JourneyClassifierAgent";
+    static final String PROFILE_STEP = "CustomerPartyProfileAgent";
+    static final String GROUP_STEP = "GroupRelationshipAgent";
+    static final String TRANSACTION_STEP = "TransactionPatternAgent";
+    static final String RISK_STEP = "RiskRulesAgent";
+    static final String NOTE_STEP = "KYBNoteAgent";
+    static final Set<String> WORKFLOW_STEPS = Set.of(
+            JOURNEY_STEP, PROFILE_STEP, GROUP_STEP, TRANSACTION_STEP, RISK_STEP, NOTE_STEP);
+
     @Autowired
     private JourneyClassifierAgent journeyClassifierAgent;
     
@@ -28,89 +49,417 @@ public class ConductorAgent {
     
     @Autowired
     private KYBNoteAgent kybNoteAgent;
+
+    @Autowired
+    private RulesRepository rulesRepository;
+
+    @Autowired
+    private KybResultCache kybResultCache;
+
+    @Autowired
+    private KybSingleFlight kybSingleFlight;
+
+    @Autowired
+    private StepJournal stepJournal;
+
+    @Autowired
+    private WorkflowEngine workflowEngine;
+    
+    /** Budget for a whole run; steps still outstanding when it runs out fall back (0 = no deadline). */
+    @Value("${kyb.workflow.deadline-ms:90000}")
+    private long deadlineMs;
+    
+    /** Start group analysis alongside journey classification when reference data hints at linkage. */
+    @Value("${kyb.workflow.speculative-group.enabled:false}")
+    private boolean speculativeGroup;
+
+    /** Stream the note to listeners token by token instead of waiting for the whole completion. */
+    @Value("${kyb.note.streaming.enabled:true}")
+    private boolean streamNote;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    private ExecutionPlan workflowPlan;
+
+    @PostConstruct
+    void loadWorkflow() {
+        workflowPlan = workflowEngine.loadPlan(WORKFLOW_STEPS);
+    }
 
     public Map<String, Object> runKYB(String customerId) throws IOException {
+        return runKYB(customerId, KybStepListener.NONE);
+    }
+    
+    /**
+     * Runs the KYB workflow, reporting each step result to the listener as soon as it is ready.
+     * Cached results are replayed to the listener step by step.
+     */
+    public Map<String, Object> runKYB(String customerId, KybStepListener listener) throws IOException {
+        Instant deadline = deadlineMs > 0 ? Instant.now().plusMillis(deadlineMs) : null;
+        // Identical inputs (CRM record, parties, transactions, rules) give an identical assessment,
+        // so a cached result is returned instead of paying for the LLM chain again.
+        // The whole run uses one rules snapshot even if rules.json is reloaded part-way through.
+        RulesRepository.VersionedRules rules = rulesRepository.current();
+        String cacheKey = kybResultCache.keyFor(customerId, rules.checksum());
+        Optional<KybResultCache.Lookup> cached = kybResultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            Map<String, Object> result = cached.get().result();
+            recordCacheAudit(result, cacheKey, true, cached.get().cachedAt());
+            recordRulesAudit(result, rules);
+            replaySteps(result, listener);
+            return result;
+        }
+        
+        // Concurrent calls for the same customer and rules version share one run
+        KybSingleFlight.Outcome outcome = kybSingleFlight.execute(customerId + "@" + rules.checksum(), () -> {
+            // Runs over identical inputs share a run ID, so a retry replays the journaled LLM steps
+            String runId = kybResultCache.inputKey(customerId, rules.checksum());
+            Map<String, Object> result = executeKYB(customerId, runId, rules, listener, deadline);
+            recordCacheAudit(result, cacheKey, false, null);
+            recordRulesAudit(result, rules);
+            // A partial result is not cached, and its journal is kept so the next attempt replays
+            // the steps that did finish (including late answers to the ones that timed out)
+            if (!Boolean.TRUE.equals(result.get("_partial"))) {
+                stepJournal.complete(runId);
+                kybResultCache.put(cacheKey, result);
+            }
+            return result;
+        });
+        Map<String, Object> result = outcome.result();
+        if (!outcome.leader()) {
+            Map<String, Object> auditTrail = extractMapFromObject(result.get("_audit_trail"), new HashMap<>());
+            auditTrail.put("coalesced", true);
+            result.put("_audit_trail", auditTrail);
+            replaySteps(result, listener);
+        }
+        return result;
+    }
+    
+    /**
+     * Starts batched journey classification for the customers of a sweep that will actually run
+     * the workflow, so their journey steps share a few LLM requests instead of one each.
+     */
+    public void prefetchJourneyClassifications(List<String> customerIds) {
+        String rulesChecksum = rulesRepository.current().checksum();
+        journeyClassifierAgent.prefetch(customerIds.stream()
+                .filter(customerId -> !kybResultCache.contains(kybResultCache.keyFor(customerId, rulesChecksum)))
+                .toList());
+    }
+    
+    /**
+     * Customers per batched journey classification request.
+     */
+    public int journeyClassificationBatchSize() {
+        return journeyClassifierAgent.batchSize();
+    }
+    
+    private Map<String, Object> executeKYB(String customerId,
+                                           String runId,
+                                           RulesRepository.VersionedRules rules,
+                                           KybStepListener listener,
+                                           Instant deadline) throws IOException {
         Map<String, Object> result = new HashMap<>();
         
-        // Step 1: Journey Classification
-        Map<String, Object> journeyClassification = journeyClassifierAgent.classifyJourney(customerId);
-        String journeyType = extractString(journeyClassification, "journey_type", "LIMITED_COMPANY_SINGLE");
-        Boolean hasLinkedCustomers = extractBoolean(journeyClassification, "has_linked_customers", false);
+        // Every step starts as soon as the steps it depends on in workflow.json have finished
+        WorkflowRun run = workflowEngine.start(workflowPlan, workflowSteps(customerId, rules, listener),
+                workflowFallbacks(customerId), speculativeSteps(customerId), runId, deadline);
+        
+        // Deterministic and fast, so report it as soon as it lands rather than in workflow order
+        run.future(TRANSACTION_STEP).thenAccept(insights -> {
+            if (insights != null) {
+                notifyStep(listener, "transaction_insights", "transaction_insights",
+                        transactionInsightsOf(insights).toMap());
+            }
+        });
+        
+        Map<String, Object> journeyClassification = outputMap(await(run.future(JOURNEY_STEP)));
+        String journeyType = journeyTypeOf(journeyClassification);
+        Boolean hasLinkedCustomers = journeyClassification != null
+                && extractBoolean(journeyClassification, "has_linked_customers", false);
         result.put("journey_type", journeyType);
+        notifyStep(listener, "journey_type", "journey_type", journeyType, "has_linked_customers", hasLinkedCustomers);
         
-        // Step 2: Customer & Party Profile
-        Map<String, Object> entityAndParty = customerPartyProfileAgent.getEntityAndPartyProfile(customerId, journeyType);
-        Map<String, Object> entityProfile = extractMapFromObject(entityAndParty.get("entity_profile"), new HashMap<>());
-        Map<String, Object> partySummary = normalizePartySummary(entityAndParty.get("party_summary"));
+        Object entityAndParty = await(run.future(PROFILE_STEP));
+        Map<String, Object> entityProfile = entityProfileOf(entityAndParty);
+        Map<String, Object> partySummary = partySummaryOf(entityAndParty);
         result.put("entity_profile", entityProfile);
         result.put("party_summary", partySummary);
+        notifyStep(listener, "entity_profile", "entity_profile", entityProfile, "party_summary", partySummary);
         
-        // Step 3: Group/Relationship Context (conditional)
-        if (hasLinkedCustomers) {
-            Map<String, Object> groupContext = groupRelationshipAgent.getGroupContext(customerId, true);
-            result.put("group_context", groupContext);
-        } else {
-            result.put("group_context", null);
-        }
+        result.put("group_context", await(run.future(GROUP_STEP)));
+        notifyStep(listener, "group_context", "group_context", result.get("group_context"));
         
-        // Step 4: Transaction Pattern Analysis
-        String transactionInsightsJson = transactionAgent.analyzeTransactions(customerId);
-        Map<String, Object> txEnvelope = parseJsonToMap(transactionInsightsJson, Map.of("transaction_insights", defaultTransactionInsights()));
-        Map<String, Object> transactionInsights = extractMapFromObject(txEnvelope.get("transaction_insights"), defaultTransactionInsights());
-        result.put("transaction_insights", transactionInsights);
-        String transactionSummary = extractStringFromObject(transactionInsights.get("summary"), "Transaction analysis not available");
-
-        // Step 5: Risk & Rules Assessment
-        String profileSummary = formatProfileSummary(entityProfile, partySummary);
-        com.fasterxml.jackson.databind.JsonNode rules = JsonLoader.loadJson("rules.json");
+        // The typed transaction and risk results become maps here, where they join the result
+        result.put("transaction_insights", transactionInsightsOf(await(run.future(TRANSACTION_STEP))).toMap());
         
-        Map<String, Object> riskAssessment = riskRulesAgent.assessRisk(
-                entityProfile,
-                partySummary,
-                extractMapFromObject(result.get("group_context"), new HashMap<>()),
-                transactionInsights,
-                journeyType,
-                rules);
+        Map<String, Object> riskAssessment = riskAssessmentOf(await(run.future(RISK_STEP)), journeyType).toMap();
         result.put("risk_assessment", riskAssessment);
+        notifyStep(listener, "risk_assessment", "risk_assessment", riskAssessment);
         
-        // Step 6: KYB Note & Action Plan
-        Map<String, Object> kybNoteAndActions = kybNoteAgent.generateKYBNoteWithActions(
-            profileSummary,
-            transactionSummary,
-            riskAssessment
-        );
+        Map<String, Object> kybNoteAndActions = outputMap(await(run.future(NOTE_STEP)));
+        if (kybNoteAndActions == null) {
+            kybNoteAndActions = new HashMap<>();
+        }
         
         String kybNote = extractString(kybNoteAndActions, "kyb_note", "");
         List<String> recommendedActions = extractStringList(kybNoteAndActions, "recommended_actions", new ArrayList<>());
         
         result.put("kyb_note", kybNote);
         result.put("recommended_actions", recommendedActions);
+        notifyStep(listener, "kyb_note", "kyb_note", kybNote, "recommended_actions", recommendedActions);
         
         // Validate and ensure all required fields are present
         ensureRequiredFields(result, hasLinkedCustomers, journeyType);
         
-        // Audit trail: Add metadata about which agents were called
+        // Audit trail: which agents actually ran (skipped steps are left out)
         Map<String, Object> auditTrail = new HashMap<>();
-        List<String> agentsCalled = new ArrayList<>();
-        agentsCalled.add("JourneyClassifierAgent");
-        agentsCalled.add("CustomerPartyProfileAgent");
-        if (hasLinkedCustomers) {
-            agentsCalled.add("GroupRelationshipAgent");
-        }
-        agentsCalled.add("TransactionPatternAgent");
-        agentsCalled.add("RiskRulesAgent");
-        agentsCalled.add("KYBNoteAgent");
-        
-        auditTrail.put("agents_called", agentsCalled);
+        auditTrail.put("agents_called", run.executedSteps());
+        auditTrail.put("workflow_version", run.planVersion());
         auditTrail.put("customer_id", customerId);
         auditTrail.put("timestamp", new Date().toString());
+        auditTrail.put("step_timings", run.stepTimings());
         result.put("_audit_trail", auditTrail);
         
+        // Steps that missed their budget were answered by deterministic fallbacks
+        List<String> fallbackSteps = run.fallbackSteps();
+        if (!fallbackSteps.isEmpty()) {
+            result.put("_partial", true);
+            result.put("_partial_steps", fallbackSteps);
+        }
+        
         return result;
     }
     
+    /**
+     * Step implementations for workflow.json, bound to one customer and rules snapshot. Each step
+     * reads only the outputs of the steps it depends on; a dependency that was skipped or left out
+     * of the workflow reads as null and falls back to the same defaults the result uses.
+     * Transaction insights and the risk assessment pass between the steps as records and only
+     * become maps in the result.
+     * LLM-backed steps pass their remaining budget to their agent, so a call whose step has
+     * already fallen back does not go on to take a concurrency slot.
+     * When a listener is attached, the note is streamed to it token by token as kyb_note_token
+     * until the note step's budget runs out; after that its tokens are no longer forwarded and the
+     * fallback note is used.
+     */
+    private Map<String, WorkflowStep> workflowSteps(String customerId, RulesRepository.VersionedRules rules,
+                                                    KybStepListener listener) {
+        Map<String, WorkflowStep> steps = new HashMap<>();
+        steps.put(JOURNEY_STEP, context -> journeyClassifierAgent.classifyJourney(customerId, context.stepRemaining()));
+        steps.put(TRANSACTION_STEP, context -> transactionAgent.computeInsights(customerId, rules.compiled()));
+        steps.put(PROFILE_STEP, context -> customerPartyProfileAgent.getEntityAndPartyProfile(
+                customerId, journeyTypeOf(context.input(JOURNEY_STEP)), context.stepRemaining()));
+        steps.put(GROUP_STEP, context -> groupRelationshipAgent.getGroupContext(customerId, true, context.stepRemaining()));
+        steps.put(RISK_STEP, context -> {
+            Object entityAndParty = context.input(PROFILE_STEP);
+            return riskRulesAgent.assessRisk(
+                    entityProfileOf(entityAndParty),
+                    partySummaryOf(entityAndParty),
+                    extractMapFromObject(context.input(GROUP_STEP), new HashMap<>()),
+                    transactionInsightsOf(context.input(TRANSACTION_STEP)),
+                    journeyTypeOf(context.input(JOURNEY_STEP)),
+                    rules.compiled());
+        });
+        steps.put(NOTE_STEP, context -> {
+            RiskAssessment riskAssessment = riskAssessmentOf(context.input(RISK_STEP));
+            if (streamNote && listener != KybStepListener.NONE) {
+                return kybNoteAgent.generateKYBNoteStreaming(
+                        profileSummaryOf(context.input(PROFILE_STEP)),
+                        transactionSummaryOf(context.input(TRANSACTION_STEP)),
+                        riskAssessment,
+                        context.stepRemaining(),
+                        token -> notifyStep(listener, "kyb_note_token", "delta", token));
+            }
+            return kybNoteAgent.generateKYBNoteWithActions(
+                    profileSummaryOf(context.input(PROFILE_STEP)),
+                    transactionSummaryOf(context.input(TRANSACTION_STEP)),
+                    riskAssessment,
+                    context.stepRemaining());
+        });
+        return steps;
+    }
+    
+    /**
+     * Steps worth starting before their dependencies finish for this customer.
+     */
+    private Set<String> speculativeSteps(String customerId) {
+        if (speculativeGroup && groupRelationshipAgent.hasLinkageSignals(customerId)) {
+            return Set.of(GROUP_STEP);
+        }
+        return Set.of();
+    }
+    
+    /**
+     * Deterministic answers for steps that miss their time budget: the agents' own non-LLM
+     * fallbacks, or the defaults the result already uses.
+     */
+    private Map<String, WorkflowStep> workflowFallbacks(String customerId) {
+        Map<String, WorkflowStep> fallbacks = new HashMap<>();
+        fallbacks.put(JOURNEY_STEP, context -> journeyClassifierAgent.fallbackClassification(customerId));
+        fallbacks.put(TRANSACTION_STEP, context -> TransactionInsights.unavailable());
+        fallbacks.put(PROFILE_STEP, context -> customerPartyProfileAgent.fallbackEntityAndPartyProfile(
+                customerId, journeyTypeOf(context.input(JOURNEY_STEP))));
+        fallbacks.put(GROUP_STEP, context -> null);
+        fallbacks.put(RISK_STEP, context -> defaultRiskAssessment(journeyTypeOf(context.input(JOURNEY_STEP))));
+        fallbacks.put(NOTE_STEP, context -> kybNoteAgent.generateFallbackNote(
+                profileSummaryOf(context.input(PROFILE_STEP)),
+                transactionSummaryOf(context.input(TRANSACTION_STEP)),
+                riskAssessmentOf(context.input(RISK_STEP))));
+        return fallbacks;
+    }
+    
+    /**
+     * A map-shaped step output (journey, profile, group, note), or null.
+     */
+    private Map<String, Object> outputMap(Object output) {
+        return extractMapFromObject(output, null);
+    }
+    
+    private String journeyTypeOf(Object journeyClassification) {
+        Map<String, Object> classification = outputMap(journeyClassification);
+        return classification != null
+                ? extractString(classification, "journey_type", "LIMITED_COMPANY_SINGLE")
+                : "LIMITED_COMPANY_SINGLE";
+    }
+    
+    private Map<String, Object> entityProfileOf(Object entityAndParty) {
+        Map<String, Object> output = outputMap(entityAndParty);
+        return output != null
+                ? extractMapFromObject(output.get("entity_profile"), new HashMap<>())
+                : new HashMap<>();
+    }
+    
+    private Map<String, Object> partySummaryOf(Object entityAndParty) {
+        Map<String, Object> output = outputMap(entityAndParty);
+        return normalizePartySummary(output != null ? output.get("party_summary") : null);
+    }
+    
+    /**
+     * The transaction step's record. A map (the step replayed from the journal) is read back into
+     * one; a missing output reads as unavailable.
+     */
+    private TransactionInsights transactionInsightsOf(Object transactionInsights) {
+        if (transactionInsights instanceof TransactionInsights insights) {
+            return insights;
+        }
+        if (transactionInsights instanceof Map<?, ?> map) {
+            try {
+                return jsonCodec.mapper().convertValue(map, TransactionInsights.class);
+            } catch (IllegalArgumentException ignored) {
+                // not in the record's shape: treat as unavailable
+            }
+        }
+        return TransactionInsights.unavailable();
+    }
+    
+    /**
+     * The risk step's record, read back from a map if it was replayed from the journal, or null.
+     */
+    private RiskAssessment riskAssessmentOf(Object riskAssessment) {
+        if (riskAssessment instanceof RiskAssessment assessment) {
+            return assessment;
+        }
+        if (riskAssessment instanceof Map<?, ?> map) {
+            try {
+                return jsonCodec.mapper().convertValue(map, RiskAssessment.class);
+            } catch (IllegalArgumentException ignored) {
+                // not in the record's shape: treat as missing
+            }
+        }
+        return null;
+    }
+    
+    private RiskAssessment riskAssessmentOf(Object riskAssessment, String journeyType) {
+        RiskAssessment assessment = riskAssessmentOf(riskAssessment);
+        return assessment != null ? assessment : defaultRiskAssessment(journeyType);
+    }
+    
+    private String profileSummaryOf(Object entityAndParty) {
+        return formatProfileSummary(entityProfileOf(entityAndParty), partySummaryOf(entityAndParty));
+    }
+    
+    private String transactionSummaryOf(Object transactionInsights) {
+        return extractStringFromObject(transactionInsightsOf(transactionInsights).summary(),
+                "Transaction analysis not available");
+    }
+    
+    /**
+     * Records in the audit trail whether this result was served from the result cache.
+     */
+    private void recordCacheAudit(Map<String, Object> result, String cacheKey, boolean hit, Instant cachedAt) {
+        Map<String, Object> auditTrail = extractMapFromObject(result.get("_audit_trail"), new HashMap<>());
+        Map<String, Object> cacheInfo = new HashMap<>();
+        cacheInfo.put("hit", hit);
+        cacheInfo.put("key", cacheKey);
+        if (cachedAt != null) {
+            cacheInfo.put("cached_at", cachedAt.toString());
+        }
+        auditTrail.put("result_cache", cacheInfo);
+        result.put("_audit_trail", auditTrail);
+    }
+    
+    /**
+     * Reports a cached result to the listener as if each step had just completed.
+     */
+    private void replaySteps(Map<String, Object> result, KybStepListener listener) {
+        notifyStep(listener, "journey_type", "journey_type", result.get("journey_type"),
+                "has_linked_customers", result.get("group_context") != null);
+        notifyStep(listener, "transaction_insights", "transaction_insights", result.get("transaction_insights"));
+        notifyStep(listener, "entity_profile", "entity_profile", result.get("entity_profile"),
+                "party_summary", result.get("party_summary"));
+        notifyStep(listener, "group_context", "group_context", result.get("group_context"));
+        notifyStep(listener, "risk_assessment", "risk_assessment", result.get("risk_assessment"));
+        notifyStep(listener, "kyb_note", "kyb_note", result.get("kyb_note"),
+                "recommended_actions", result.get("recommended_actions"));
+    }
+    
+    /**
+     * Sends one step result to the listener. A failing listener (e.g. a disconnected SSE client)
+     * must not fail the workflow, so its exceptions are swallowed.
+     */
+    private void notifyStep(KybStepListener listener, String step, Object... keyValues) {
+        if (listener == KybStepListener.NONE) {
+            return;
+        }
+        Map<String, Object> payload = new HashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            payload.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        try {
+            listener.onStep(step, payload);
+        } catch (RuntimeException ignored) {
+        }
+    }
+    
+    /**
+     * Records in the audit trail which rules version the assessment was scored against.
+     */
+    private void recordRulesAudit(Map<String, Object> result, RulesRepository.VersionedRules rules) {
+        Map<String, Object> auditTrail = extractMapFromObject(result.get("_audit_trail"), new HashMap<>());
+        auditTrail.put("rules_version", rules.version());
+        auditTrail.put("rules_checksum", rules.checksum());
+        result.put("_audit_trail", auditTrail);
+    }
+    
+    /**
+     * Waits for a step result, rethrowing the step's own IOException or RuntimeException.
+     */
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Ensures all required fields are present and properly structured in the result.
      * This method validates the output structure as per requirements.
@@ -135,7 +484,8 @@ public class ConductorAgent {
         }
         
         // Ensure transaction_insights is structured
-        Map<String, Object> transactionInsights = extractMapFromObject(result.get("transaction_insights"), defaultTransactionInsights());
+        Map<String, Object> transactionInsights = extractMapFromObject(result.get("transaction_insights"),
+                TransactionInsights.unavailable().toMap());
         Map<String, Object> supportingMetrics = extractMapFromObject(
                 transactionInsights.get("supporting_metrics"), new HashMap<>());
         transactionInsights.put("supporting_metrics", supportingMetrics);
@@ -145,7 +495,7 @@ public class ConductorAgent {
         
         // Ensure risk_assessment (must be an object with: band, score, triggers, reasoning)
         Map<String, Object> riskAssessment = extractMapFromObject(
-                result.get("risk_assessment"), defaultRiskAssessment(journeyType));
+                result.get("risk_assessment"), defaultRiskAssessment(journeyType).toMap());
         riskAssessment.putIfAbsent("risk_band", "AMBER");
         riskAssessment.putIfAbsent("score", 20);
         riskAssessment.putIfAbsent("journey_type", journeyType);
@@ -198,7 +548,7 @@ public class ConductorAgent {
         structure.put("risk_assessment", "object - Contains: risk_band, score, journey_type, triggers_fired[], score_breakdown, overall_reasoning");
         structure.put("kyb_note", "string - KYB narrative for RM");
         structure.put("recommended_actions", "array - List of actionable items for RM");
-        structure.put("_audit_trail", "object - Metadata about agents called (optional)");
+        structure.put("_audit_trail", "object - Metadata about agents called and per-step start/end timestamps (optional)");
         return structure;
     }
     
@@ -216,7 +566,7 @@ public class ConductorAgent {
         // If it's a Map or other object, convert to JSON string
         if (value instanceof Map) {
             try {
-                return objectMapper.writeValueAsString(value);
+                return jsonCodec.write(value);
             } catch (Exception e) {
                 return value.toString();
             }
@@ -328,39 +678,9 @@ public class ConductorAgent {
         return summary;
     }
     
-    private Map<String, Object> parseJsonToMap(String json, Map<String, Object> defaultValue) {
-        if (json == null || json.isBlank()) {
-            return defaultValue;
-        }
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> parsed = objectMapper.readValue(json, Map.class);
-            return parsed;
-        } catch (Exception e) {
-            return defaultValue;
-        }
-    }
-    
-    private Map<String, Object> defaultTransactionInsights() {
-        Map<String, Object> insights = new HashMap<>();
-        insights.put("summary", "Transaction analysis not available");
-        insights.put("candidate_triggers", new ArrayList<String>());
-        insights.put("supporting_metrics", new HashMap<String, Object>());
-        return insights;
-    }
-
-    private Map<String, Object> defaultRiskAssessment(String journeyType) {
-        Map<String, Object> assessment = new HashMap<>();
-        assessment.put("risk_band", "AMBER");
-        assessment.put("score", 20);
-        assessment.put("journey_type", journeyType);
-        assessment.put("triggers_fired", new ArrayList<Map<String, Object>>());
-        Map<String, Object> scoreBreakdown = new HashMap<>();
-        scoreBreakdown.put("base_score", 20);
-        scoreBreakdown.put("trigger_impacts", new ArrayList<Map<String, Object>>());
-        assessment.put("score_breakdown", scoreBreakdown);
-        assessment.put("overall_reasoning", "Risk assessment completed");
-        return assessment;
+    private RiskAssessment defaultRiskAssessment(String journeyType) {
+        return new RiskAssessment("AMBER", 20, journeyType, List.of(),
+                new RiskAssessment.ScoreBreakdown(20, List.of()), "Risk assessment completed");
     }
     
     private Map<String, Object> normalizePartyRecord(Map<?, ?> partyMap) {
@@ -389,7 +709,7 @@ public class ConductorAgent {
         }
         if (value instanceof Map || value instanceof List) {
             try {
-                return objectMapper.writeValueAsString(value);
+                return jsonCodec.write(value);
             } catch (Exception e) {
                 return value.toString();
             }
@@ -1,17 +1,18 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.llm.PromptBudget;
+import com.mcpkyb.utils.JsonCodec;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,30 +22,27 @@ import java.util.Map;
 public class CustomerPartyProfileAgent {
     
     @Autowired
-    private OpenAiChatModel chatModel;
+    private ChatModel chatModel;
 
     @Autowired
     private LLMMonitoringService llmMonitoringService;
+
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    @Autowired
+    private PromptBudget promptBudget;
     
-    public Map<String, Object> getEntityAndPartyProfile(String customerId, String journeyType) throws IOException {
-        JsonNode crmData = JsonLoader.loadJson("crm.json");
-        JsonNode partiesData = JsonLoader.loadJson("parties.json");
-        JsonNode customer = null;
-        
-        for (JsonNode c : crmData.get("customers")) {
-            if (c.get("customer_id").asText().equals(customerId)) {
-                customer = c;
-                break;
-            }
-        }
-        
-        if (customer == null) {
-            throw new IOException("Customer not found: " + customerId);
-        }
-        
-        JsonNode partyRecords = loadPartyRecords(partiesData, customerId);
+    /**
+     * Builds the entity profile and party summary with the LLM. budget is how long the caller will
+     * wait for it (null for no limit); the call is not queued beyond it.
+     */
+    public Map<String, Object> getEntityAndPartyProfile(String customerId, String journeyType, Duration budget) throws IOException {
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
+        JsonNode partyRecords = loadPartyRecords(customerId);
         List<Map<String, Object>> fallbackParties = buildPartyProfiles(partyRecords, customerId, customer);
         String fallbackObservations = buildPartyObservations(fallbackParties, journeyType);
         
@@ -75,21 +73,21 @@ public class CustomerPartyProfileAgent {
             }
         """;
         
-        String prettyCustomer = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(customer);
-        String partiesJson = objectMapper.writerWithDefaultPrettyPrinter()
-                .writeValueAsString(partyRecords != null ? partyRecords : objectMapper.createArrayNode());
-        
-        String userPrompt = String.format("""
+        // Party records come first in the budget: they are what this agent is for
+        String userPrompt = promptBudget.render("customer_party_profile", systemPrompt, """
             Journey Type: %s
             
-            CRM Customer Record:
+            Party Records:
             %s
             
-            Party Records:
+            CRM Customer Record:
             %s
             
             Provide the structured JSON exactly in the requested format.
-        """, journeyType, prettyCustomer, partiesJson);
+        """,
+                PromptBudget.Input.of("journey_type", journeyType),
+                PromptBudget.Input.of("parties", partyRecords != null ? partyRecords : jsonCodec.createArrayNode()),
+                PromptBudget.Input.of("customer", customer, "twitter_id", "primary_rm"));
         
         ChatRequest request = ChatRequest.builder()
                 .messages(
@@ -98,29 +96,16 @@ public class CustomerPartyProfileAgent {
                 )
                 .build();
         
-        // Track LLM call
-        io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-        ChatResponse response = chatModel.chat(request);
+        // Token usage, latency and errors are recorded by the model listener
+        ChatResponse response = llmMonitoringService.callAs("customer_party_profile", budget, () -> chatModel.chat(request));
         String responseText = response.aiMessage().text();
-
-        // Record successful LLM call
-        llmMonitoringService.recordSuccessfulCall(
-            llmTimer,
-            "gpt-4o-mini", // model from config
-            200, // estimated prompt tokens
-            100, // estimated completion tokens
-            1000 // estimated duration in ms
-        );
         
         // Parse JSON from response
         String jsonStr = cleanJsonResponse(responseText);
         
         Map<String, Object> result = new HashMap<>();
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> parsedResult = objectMapper.readValue(jsonStr, Map.class);
-            result = parsedResult;
+            result = jsonCodec.readMap(jsonStr);
         } catch (Exception e) {
             // Fallback to structured summary
             result.put("entity_profile", createFallbackEntityProfile(customer, journeyType));
@@ -136,13 +121,22 @@ public class CustomerPartyProfileAgent {
         return structuredResult;
     }
     
-    private JsonNode loadPartyRecords(JsonNode partiesData, String customerId) {
-        if (partiesData == null || partiesData.isMissingNode()) {
-            return objectMapper.createArrayNode();
-        }
-        JsonNode customersNode = partiesData.path("customers");
-        JsonNode partyNode = customersNode.path(customerId);
-        return partyNode.isMissingNode() ? objectMapper.createArrayNode() : partyNode;
+    /**
+     * Entity profile and party summary built from the CRM and party records alone, used when the
+     * LLM answer does not arrive in time.
+     */
+    public Map<String, Object> fallbackEntityAndPartyProfile(String customerId, String journeyType) throws IOException {
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
+        List<Map<String, Object>> parties = buildPartyProfiles(loadPartyRecords(customerId), customerId, customer);
+        Map<String, Object> result = new HashMap<>();
+        result.put("entity_profile", createFallbackEntityProfile(customer, journeyType));
+        result.put("party_summary", buildFallbackPartySummary(parties, buildPartyObservations(parties, journeyType)));
+        return result;
+    }
+    
+    private JsonNode loadPartyRecords(String customerId) {
+        JsonNode partyNode = referenceDataStore.getParties(customerId);
+        return partyNode.isMissingNode() ? jsonCodec.createArrayNode() : partyNode;
     }
     
     private Map<String, Object> ensureEntityProfile(Object obj, JsonNode customer, String journeyType) {
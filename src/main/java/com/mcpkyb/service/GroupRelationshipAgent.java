@@ -1,16 +1,17 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.utils.JsonCodec;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,30 +21,42 @@ import java.util.Map;
 public class GroupRelationshipAgent {
     
     @Autowired
-    private OpenAiChatModel chatModel;
+    private ChatModel chatModel;
 
     @Autowired
     private LLMMonitoringService llmMonitoringService;
+
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
+
+    @Autowired
+    private JsonCodec jsonCodec;
+    
+    /**
+     * Cheap reference-data hint that the customer has linked entities: a Companies House group
+     * membership, or a party shared with another customer. Used to decide whether group analysis
+     * is worth starting before the journey classification has confirmed linkage.
+     */
+    public boolean hasLinkageSignals(String customerId) {
+        JsonNode group = referenceDataStore.getBusiness(customerId).path("group_structure");
+        if (group.path("is_group_member").asBoolean(false) || !group.path("group_companies").isEmpty()) {
+            return true;
+        }
+        return !referenceDataStore.customersSharingParties(customerId).isEmpty();
+    }
     
-    public Map<String, Object> getGroupContext(String customerId, boolean hasLinkedCustomers) throws IOException {
+    /**
+     * Analyses the customer's group relationships with the LLM, or returns null when it has no
+     * linked customers. budget is how long the caller will wait for it (null for no limit); the
+     * call is not queued beyond it.
+     */
+    public Map<String, Object> getGroupContext(String customerId, boolean hasLinkedCustomers, Duration budget) throws IOException {
         // If no linked customers, return null context
         if (!hasLinkedCustomers) {
             return null;
         }
         
-        JsonNode crmData = JsonLoader.loadJson("crm.json");
-        JsonNode customer = null;
-        
-        for (JsonNode c : crmData.get("customers")) {
-            if (c.get("customer_id").asText().equals(customerId)) {
-                customer = c;
-                break;
-            }
-        }
-        
-        if (customer == null) {
-            throw new IOException("Customer not found: " + customerId);
-        }
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
         
         String systemPrompt = """
             You are a Group / Relationship Agent for KYB Early-Risk Radar.
@@ -77,28 +90,15 @@ public class GroupRelationshipAgent {
                 )
                 .build();
         
-        // Track LLM call
-        io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-        ChatResponse response = chatModel.chat(request);
+        // Token usage, latency and errors are recorded by the model listener
+        ChatResponse response = llmMonitoringService.callAs("group_relationship", budget, () -> chatModel.chat(request));
         String responseText = response.aiMessage().text();
-
-        // Record successful LLM call
-        llmMonitoringService.recordSuccessfulCall(
-            llmTimer,
-            "gpt-4o-mini", // model from config
-            200, // estimated prompt tokens
-            100, // estimated completion tokens
-            1000 // estimated duration in ms
-        );
         
         // Parse JSON from response
         String jsonStr = cleanJsonResponse(responseText);
         
         try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> result = mapper.readValue(jsonStr, Map.class);
+            Map<String, Object> result = jsonCodec.readMap(jsonStr);
             
             // If no meaningful relationships found, return null
             if (result.isEmpty() || (result.containsKey("linked_entities") && 
@@ -109,7 +109,7 @@ public class GroupRelationshipAgent {
             return result;
         } catch (Exception e) {
             // Check all customers for potential links
-            return checkForLinkedEntities(customer, crmData);
+            return checkForLinkedEntities(customer);
         }
     }
     
@@ -127,14 +127,14 @@ public class GroupRelationshipAgent {
         return jsonStr.trim();
     }
     
-    private Map<String, Object> checkForLinkedEntities(JsonNode customer, JsonNode crmData) {
+    private Map<String, Object> checkForLinkedEntities(JsonNode customer) {
         String customerSector = customer.get("sector").asText();
         String customerShortName = customer.get("short_name").asText();
         
         List<String> linkedIds = new ArrayList<>();
         
         // Simple heuristic: find customers in same sector with similar names
-        for (JsonNode c : crmData.get("customers")) {
+        for (JsonNode c : referenceDataStore.getCustomers()) {
             if (!c.get("customer_id").asText().equals(customer.get("customer_id").asText())) {
                 String otherSector = c.get("sector").asText();
                 String otherShortName = c.get("short_name").asText();
@@ -1,54 +1,320 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.mcpkyb.utils.JsonLoader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mcpkyb.utils.JsonCodec;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class JourneyClassifierAgent {
     
+    private static final Logger logger = LoggerFactory.getLogger(JourneyClassifierAgent.class);
+
+    private static final String JOURNEY_TYPES_PROMPT = """
+            You are a Journey Classifier Agent for KYB Early-Risk Radar.
+            
+            Your task is to classify the customer journey type based on legal entity structure.
+            
+            Journey types:
+            1. SOLE_TRADER - Individual operating as sole proprietor
+            2. LIMITED_COMPANY_SINGLE - Single-party limited company
+            3. LIMITED_COMPANY_MULTI - Multi-party limited company
+            4. PARTNERSHIP_LLP - Partnership or Limited Liability Partnership
+            5. GROUP - Group entity with linked/sister entities
+        """;
+
+    private static final Set<String> JOURNEY_TYPES = Set.of(
+            "SOLE_TRADER", "LIMITED_COMPANY_SINGLE", "LIMITED_COMPANY_MULTI", "PARTNERSHIP_LLP", "GROUP");
+
     @Autowired
-    private OpenAiChatModel chatModel;
+    private ChatModel chatModel;
 
     @Autowired
     private LLMMonitoringService llmMonitoringService;
+
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
+
+    @Autowired
+    private JourneyRuleClassifier journeyRuleClassifier;
+
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    @Autowired
+    @Qualifier("kybStepExecutor")
+    private ExecutorService kybStepExecutor;
+
+    @Value("${kyb.journey.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${kyb.journey.batch.size:10}")
+    private int batchSize;
+
+    // Classifications started by prefetch and not yet picked up by their workflow run. Entries a
+    // run never asks for (cached or journaled results) expire instead of accumulating.
+    private final Cache<String, CompletableFuture<Map<String, Object>>> prefetched = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(15))
+            .maximumSize(10_000)
+            .build();
+
+    private final Counter batchRequests;
+    private final Counter batchedItems;
+    private final Counter singleFallbackItems;
+    private final Counter chunkFailedItems;
+
+    public JourneyClassifierAgent(MeterRegistry meterRegistry) {
+        this.batchRequests = Counter.builder("kyb.journey.batch.requests")
+                .description("Batched journey classification LLM requests")
+                .register(meterRegistry);
+        this.batchedItems = Counter.builder("kyb.journey.batch.items")
+                .description("Customers in batched journey classification requests, by how they were answered")
+                .tag("outcome", "batched")
+                .register(meterRegistry);
+        this.singleFallbackItems = Counter.builder("kyb.journey.batch.items")
+                .description("Customers in batched journey classification requests, by how they were answered")
+                .tag("outcome", "single_fallback")
+                .register(meterRegistry);
+        this.chunkFailedItems = Counter.builder("kyb.journey.batch.items")
+                .description("Customers in batched journey classification requests, by how they were answered")
+                .tag("outcome", "request_failed")
+                .register(meterRegistry);
+    }
     
-    public Map<String, Object> classifyJourney(String customerId) throws IOException {
-        JsonNode crmData = JsonLoader.loadJson("crm.json");
-        JsonNode customer = null;
+    /**
+     * Classifies the customer's journey, from rules when the reference data makes it clear-cut and
+     * from the LLM otherwise. A classification started by prefetch is used instead when there is one.
+     * budget is how long the caller will wait for the LLM (null for no limit); the call is not
+     * queued beyond it.
+     */
+    public Map<String, Object> classifyJourney(String customerId, Duration budget) throws IOException {
+        CompletableFuture<Map<String, Object>> pending = prefetched.asMap().remove(customerId);
+        if (pending != null) {
+            try {
+                return new HashMap<>(pending.join());
+            } catch (CompletionException e) {
+                logger.debug("Prefetched journey classification for {} failed: {}", customerId, e.getMessage());
+            }
+        }
+        
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
         
-        for (JsonNode c : crmData.get("customers")) {
-            if (c.get("customer_id").asText().equals(customerId)) {
-                customer = c;
-                break;
+        JourneyRuleClassifier.Classification ruleClassification = journeyRuleClassifier.classify(customer);
+        if (journeyRuleClassifier.accept(ruleClassification)) {
+            return rulesResult(ruleClassification);
+        }
+        return classifyWithLlm(customer, budget);
+    }
+    
+    /**
+     * Starts classifying the journeys of the next customers of a batch sweep ahead of their workflow
+     * runs. Clear-cut customers are decided by rules as usual; the rest are sent to the LLM
+     * kyb.journey.batch.size at a time, in one request per chunk that shares the system prompt. Runs
+     * that reach their journey step before their chunk is answered wait for it. Customers whose
+     * answer fails validation are classified one by one; when the chunk request itself fails their
+     * runs classify them as they would without batching.
+     */
+    public void prefetch(Collection<String> customerIds) {
+        if (!batchEnabled) {
+            return;
+        }
+        List<JsonNode> forLlm = new ArrayList<>();
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new HashMap<>();
+        for (String customerId : new LinkedHashSet<>(customerIds)) {
+            JsonNode customer = referenceDataStore.findCustomer(customerId);
+            if (customer == null || prefetched.getIfPresent(customerId) != null) {
+                continue;
             }
+            JourneyRuleClassifier.Classification ruleClassification = journeyRuleClassifier.classify(customer);
+            if (journeyRuleClassifier.accept(ruleClassification)) {
+                prefetched.put(customerId, CompletableFuture.completedFuture(rulesResult(ruleClassification)));
+                continue;
+            }
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            futures.put(customerId, future);
+            prefetched.put(customerId, future);
+            forLlm.add(customer);
         }
         
-        if (customer == null) {
-            throw new IOException("Customer not found: " + customerId);
+        int chunkSize = batchSize();
+        for (int start = 0; start < forLlm.size(); start += chunkSize) {
+            List<JsonNode> chunk = forLlm.subList(start, Math.min(start + chunkSize, forLlm.size()));
+            kybStepExecutor.execute(() -> classifyPrefetched(chunk, futures));
+        }
+    }
+    
+    public int batchSize() {
+        return Math.max(1, batchSize);
+    }
+    
+    private void classifyPrefetched(List<JsonNode> chunk, Map<String, CompletableFuture<Map<String, Object>>> futures) {
+        Map<String, Map<String, Object>> results;
+        try {
+            // A lone customer gains nothing from the batch prompt
+            results = chunk.size() > 1 ? classifyChunk(chunk) : Map.of(
+                    customerIdOf(chunk.get(0)), classifyWithLlm(chunk.get(0), null));
+        } catch (RuntimeException e) {
+            // Rejected by the limiter or failed outright: retrying each customer here would only add
+            // load, so hand the customers back to their runs
+            logger.warn("Journey classification of {} prefetched customers failed: {}", chunk.size(), e.getMessage());
+            chunkFailedItems.increment(chunk.size());
+            for (JsonNode customer : chunk) {
+                String customerId = customerIdOf(customer);
+                prefetched.asMap().remove(customerId, futures.get(customerId));
+                futures.get(customerId).completeExceptionally(e);
+            }
+            return;
         }
         
-        String systemPrompt = """
-            You are a Journey Classifier Agent for KYB Early-Risk Radar.
+        for (JsonNode customer : chunk) {
+            String customerId = customerIdOf(customer);
+            CompletableFuture<Map<String, Object>> future = futures.get(customerId);
+            try {
+                Map<String, Object> result = results.get(customerId);
+                if (result != null) {
+                    if (chunk.size() > 1) {
+                        batchedItems.increment();
+                    }
+                } else {
+                    singleFallbackItems.increment();
+                    result = classifyWithLlm(customer, null);
+                }
+                future.complete(result);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+    
+    /**
+     * Classifies several customers in one LLM request. Returns the valid answers by customer ID; a
+     * customer whose entry is missing, duplicated or malformed is left out, and so is every customer
+     * of a chunk whose response is not a JSON array. Throws when the request itself fails.
+     */
+    private Map<String, Map<String, Object>> classifyChunk(List<JsonNode> customers) {
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        
+        ArrayNode records = jsonCodec.createArrayNode();
+        customers.forEach(records::add);
+        String systemPrompt = JOURNEY_TYPES_PROMPT + """
             
-            Your task is to classify the customer journey type based on legal entity structure.
+            You will be given an array of customer records. Return a JSON array with exactly one
+            object per customer, each with:
+            - customer_id: the customer_id of the record it classifies
+            - journey_type: one of the above types
+            - has_linked_customers: boolean
+            - num_parties: integer (estimated number of parties/beneficial owners)
+            - reasoning: brief explanation
             
-            Journey types:
-            1. SOLE_TRADER - Individual operating as sole proprietor
-            2. LIMITED_COMPANY_SINGLE - Single-party limited company
-            3. LIMITED_COMPANY_MULTI - Multi-party limited company
-            4. PARTNERSHIP_LLP - Partnership or Limited Liability Partnership
-            5. GROUP - Group entity with linked/sister entities
+            Return ONLY the JSON array, no additional text.
+        """;
+        String userPrompt = String.format("""
+            Classify the journey type for each of these customers:
+            %s
+            
+            Focus on:
+            - Legal name structure (LLP, Limited, Private Limited, etc.)
+            - Entity type indicators
+            - Potential for linked entities
+        """, records.toString());
+        
+        ChatRequest request = ChatRequest.builder()
+                .messages(
+                    SystemMessage.from(systemPrompt),
+                    UserMessage.from(userPrompt)
+                )
+                .build();
+        
+        batchRequests.increment();
+        // Own workload so the limiter judges a multi-customer call against other batches, not single classifications
+        ChatResponse response = llmMonitoringService.callAs("journey_classifier_batch", () -> chatModel.chat(request));
+        JsonNode answers;
+        try {
+            answers = jsonCodec.readTree(cleanJsonResponse(response.aiMessage().text()));
+        } catch (IOException e) {
+            logger.debug("Batched journey classification of {} customers returned invalid JSON: {}", customers.size(), e.getMessage());
+            return results;
+        }
+        if (!answers.isArray()) {
+            return results;
+        }
+        
+        Set<String> requested = new LinkedHashSet<>();
+        customers.forEach(customer -> requested.add(customerIdOf(customer)));
+        Set<String> duplicated = new LinkedHashSet<>();
+        for (JsonNode answer : answers) {
+            Map<String, Object> result = validBatchAnswer(answer);
+            if (result == null) {
+                continue;
+            }
+            String customerId = (String) result.remove("customer_id");
+            if (!requested.contains(customerId)) {
+                continue;
+            }
+            if (results.putIfAbsent(customerId, result) != null) {
+                duplicated.add(customerId);
+            }
+        }
+        // Two answers for one customer: trust neither
+        duplicated.forEach(results::remove);
+        return results;
+    }
+    
+    private static String customerIdOf(JsonNode customer) {
+        return customer.path("customer_id").asText();
+    }
+    
+    private Map<String, Object> validBatchAnswer(JsonNode answer) {
+        if (!(answer instanceof ObjectNode)
+                || !answer.path("customer_id").isTextual()
+                || !JOURNEY_TYPES.contains(answer.path("journey_type").asText())
+                || !answer.path("has_linked_customers").isBoolean()
+                || !answer.path("num_parties").isIntegralNumber()
+                || answer.path("num_parties").asInt() < 0) {
+            return null;
+        }
+        Map<String, Object> result = jsonCodec.toMap(answer);
+        result.put("classified_by", "llm_batch");
+        return result;
+    }
+    
+    private Map<String, Object> rulesResult(JourneyRuleClassifier.Classification ruleClassification) {
+        Map<String, Object> result = ruleClassification.toMap();
+        result.put("classified_by", "rules");
+        return result;
+    }
+    
+    private Map<String, Object> classifyWithLlm(JsonNode customer, Duration budget) {
+        String systemPrompt = JOURNEY_TYPES_PROMPT + """
             
             You must analyze the legal name, structure indicators, and return a JSON object with:
             - journey_type: one of the above types
@@ -76,63 +342,52 @@ public class JourneyClassifierAgent {
                 )
                 .build();
         
-        // Track LLM call
-        io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-        ChatResponse response = chatModel.chat(request);
+        // Token usage, latency and errors are recorded by the model listener
+        ChatResponse response = llmMonitoringService.callAs("journey_classifier", budget, () -> chatModel.chat(request));
         String responseText = response.aiMessage().text();
-
-        // Record successful LLM call
-        llmMonitoringService.recordSuccessfulCall(
-            llmTimer,
-            "gpt-4o-mini", // model from config
-            200, // estimated prompt tokens
-            100, // estimated completion tokens
-            1000 // estimated duration in ms
-        );
         
         // Parse JSON from response (handle markdown code blocks if present)
-        String jsonStr = responseText.trim();
-        if (jsonStr.startsWith("```json")) {
-            jsonStr = jsonStr.substring(7);
-        }
-        if (jsonStr.startsWith("```")) {
-            jsonStr = jsonStr.substring(3);
-        }
-        if (jsonStr.endsWith("```")) {
-            jsonStr = jsonStr.substring(0, jsonStr.length() - 3);
-        }
-        jsonStr = jsonStr.trim();
+        String jsonStr = cleanJsonResponse(responseText);
         
         // Simple JSON parsing (in production, use proper JSON library)
         Map<String, Object> result = new HashMap<>();
         try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> parsedResult = mapper.readValue(jsonStr, Map.class);
-            result = parsedResult;
+            result = jsonCodec.readMap(jsonStr);
+            result.put("classified_by", "llm");
         } catch (Exception e) {
             // Fallback parsing
-            result.put("journey_type", inferJourneyType(customer));
-            result.put("has_linked_customers", false);
-            result.put("num_parties", 1);
-            result.put("reasoning", "Automated classification based on entity structure");
+            result = fallbackClassification(customer);
         }
         
         return result;
     }
     
-    private String inferJourneyType(JsonNode customer) {
-        String legalName = customer.get("legal_name").asText().toUpperCase();
-        
-        if (legalName.contains("LLP")) {
-            return "PARTNERSHIP_LLP";
-        } else if (legalName.contains("LIMITED") || legalName.contains("PVT") || legalName.contains("PRIVATE")) {
-            // Default to single-party, could be enhanced with actual party data
-            return "LIMITED_COMPANY_SINGLE";
-        } else {
-            return "SOLE_TRADER";
+    private String cleanJsonResponse(String responseText) {
+        String jsonStr = responseText.trim();
+        if (jsonStr.startsWith("```json")) {
+            jsonStr = jsonStr.substring(7);
         }
+        if (jsonStr.startsWith("```")) {
+            jsonStr = jsonStr.substring(3);
+        }
+        if (jsonStr.endsWith("```")) {
+            jsonStr = jsonStr.substring(0, jsonStr.length() - 3);
+        }
+        return jsonStr.trim();
+    }
+    
+    /**
+     * Deterministic classification from reference data, used when the LLM answer is unusable or
+     * does not arrive in time.
+     */
+    public Map<String, Object> fallbackClassification(String customerId) throws IOException {
+        return fallbackClassification(referenceDataStore.getCustomer(customerId));
+    }
+    
+    private Map<String, Object> fallbackClassification(JsonNode customer) {
+        Map<String, Object> result = journeyRuleClassifier.classify(customer).toMap();
+        result.put("classified_by", "fallback");
+        return result;
     }
 }
 
@@ -0,0 +1,186 @@
+package com.mcpkyb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic journey classification from reference data, so clear-cut customers don't need an
+ * LLM call.
+ *
+ * The legal name suffix gives the entity family (LLP, limited company, or none for a sole trader),
+ * the Companies House legal form confirms or contradicts it, parties.json gives the party count and
+ * the group structure and parties shared with other customers say whether there are linked
+ * entities. Each signal moves a confidence score; JourneyClassifierAgent only asks the LLM when the
+ * score is below kyb.journey.rules.min-confidence. Customers with linked entities always stay below
+ * the threshold, since GROUP versus a standalone company is a judgement call.
+ */
+@Service
+public class JourneyRuleClassifier {
+
+    private static final double NAME_MATCH = 0.6;
+    private static final double NO_SUFFIX = 0.5;
+    private static final double LEGAL_FORM_AGREES = 0.3;
+    private static final double PARTIES_KNOWN = 0.1;
+    private static final double LINKED_ENTITY_PENALTY = 0.4;
+
+    private final ReferenceDataStore referenceDataStore;
+    private final boolean enabled;
+    private final double minConfidence;
+
+    private final Counter rulesCounter;
+    private final Counter llmCounter;
+
+    public JourneyRuleClassifier(ReferenceDataStore referenceDataStore,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${kyb.journey.rules.enabled:true}") boolean enabled,
+                                 @Value("${kyb.journey.rules.min-confidence:0.9}") double minConfidence) {
+        this.referenceDataStore = referenceDataStore;
+        this.enabled = enabled;
+        this.minConfidence = minConfidence;
+
+        this.rulesCounter = Counter.builder("kyb.journey.classifications")
+                .description("Journey classifications by how they were decided")
+                .tag("path", "rules")
+                .register(meterRegistry);
+        this.llmCounter = Counter.builder("kyb.journey.classifications")
+                .description("Journey classifications by how they were decided")
+                .tag("path", "llm")
+                .register(meterRegistry);
+        Gauge.builder("kyb.journey.llm_bypass_ratio", this, JourneyRuleClassifier::bypassRatio)
+                .description("Share of journey classifications decided by rules without an LLM call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rule-based classification with the confidence behind it and the signals that produced it.
+     */
+    public record Classification(String journeyType,
+                                 boolean hasLinkedCustomers,
+                                 int numParties,
+                                 double confidence,
+                                 List<String> signals) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("journey_type", journeyType);
+            result.put("has_linked_customers", hasLinkedCustomers);
+            result.put("num_parties", numParties);
+            result.put("confidence", confidence);
+            result.put("reasoning", "Rule-based classification: " + String.join("; ", signals));
+            return result;
+        }
+    }
+
+    public Classification classify(JsonNode customer) {
+        String customerId = customer.path("customer_id").asText();
+        List<String> signals = new ArrayList<>();
+
+        String nameFamily = familyFromName(customer.path("legal_name").asText(""));
+        double confidence;
+        if (nameFamily != null) {
+            confidence = NAME_MATCH;
+            signals.add("legal name indicates " + nameFamily);
+        } else {
+            nameFamily = "SOLE_TRADER";
+            confidence = NO_SUFFIX;
+            signals.add("legal name has no company or partnership suffix");
+        }
+
+        JsonNode business = referenceDataStore.getBusiness(customerId);
+        String formFamily = familyFromLegalForm(business.path("business_identity").path("legal_form").asText(""));
+        if (formFamily != null && formFamily.equals(nameFamily)) {
+            confidence += LEGAL_FORM_AGREES;
+            signals.add("legal form agrees");
+        } else if (formFamily != null) {
+            confidence = Math.min(confidence, 0.3);
+            signals.add("legal form suggests " + formFamily);
+        }
+
+        JsonNode parties = referenceDataStore.getParties(customerId);
+        int numParties = parties.isArray() && !parties.isEmpty() ? parties.size() : 1;
+        if (parties.isArray() && !parties.isEmpty()) {
+            confidence += PARTIES_KNOWN;
+            signals.add(numParties + " parties on record");
+        }
+
+        JsonNode group = business.path("group_structure");
+        boolean groupMember = group.path("is_group_member").asBoolean(false)
+                || !group.path("group_companies").isEmpty();
+        if (groupMember) {
+            signals.add("member of a group");
+        }
+        int sharingParties = referenceDataStore.customersSharingParties(customerId).size();
+        if (sharingParties > 0) {
+            signals.add("shares parties with " + sharingParties + " other customer" + (sharingParties > 1 ? "s" : ""));
+        }
+        boolean linked = groupMember || sharingParties > 0;
+        if (linked) {
+            confidence -= LINKED_ENTITY_PENALTY;
+        }
+
+        String journeyType = "LIMITED".equals(nameFamily)
+                ? (numParties > 1 ? "LIMITED_COMPANY_MULTI" : "LIMITED_COMPANY_SINGLE")
+                : nameFamily;
+        if ("SOLE_TRADER".equals(journeyType) && numParties > 1) {
+            confidence = Math.min(confidence, 0.3);
+            signals.add("more than one party for a sole trader");
+        }
+
+        double rounded = Math.round(Math.max(0.0, Math.min(1.0, confidence)) * 100) / 100.0;
+        return new Classification(journeyType, linked, numParties, rounded, signals);
+    }
+
+    /**
+     * True if the classification is confident enough to skip the LLM; counts the decision either way.
+     */
+    public boolean accept(Classification classification) {
+        boolean accepted = enabled && classification.confidence() >= minConfidence;
+        (accepted ? rulesCounter : llmCounter).increment();
+        return accepted;
+    }
+
+    private double bypassRatio() {
+        double rules = rulesCounter.count();
+        double total = rules + llmCounter.count();
+        return total == 0 ? 0.0 : rules / total;
+    }
+
+    private static String familyFromName(String legalName) {
+        String name = " " + legalName.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", " ") + " ";
+        if (name.contains(" LLP ") || name.contains(" LIMITED LIABILITY PARTNERSHIP ")) {
+            return "PARTNERSHIP_LLP";
+        }
+        if (name.contains(" LIMITED ") || name.contains(" LTD ") || name.contains(" PVT ")
+                || name.contains(" PRIVATE ") || name.contains(" PLC ")) {
+            return "LIMITED";
+        }
+        return null;
+    }
+
+    private static String familyFromLegalForm(String legalForm) {
+        String form = legalForm.toUpperCase(Locale.ROOT);
+        if (form.isEmpty()) {
+            return null;
+        }
+        if (form.contains("PARTNERSHIP") || form.contains("LLP")) {
+            return "PARTNERSHIP_LLP";
+        }
+        if (form.contains("LIMITED") || form.contains("LTD") || form.contains("PLC")) {
+            return "LIMITED";
+        }
+        if (form.contains("SOLE")) {
+            return "SOLE_TRADER";
+        }
+        return null;
+    }
+}
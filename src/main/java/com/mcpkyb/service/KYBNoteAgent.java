@@ -1,30 +1,145 @@
 package com.mcpkyb.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.llm.CancellableStreamingHandler;
+import com.mcpkyb.llm.PromptBudget;
+import com.mcpkyb.model.RiskAssessment;
+import com.mcpkyb.utils.JsonCodec;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class KYBNoteAgent {
 
     @Autowired
-    private OpenAiChatModel chatModel;
+    private ChatModel chatModel;
+
+    @Autowired
+    private StreamingChatModel streamingChatModel;
 
     @Autowired
     private LLMMonitoringService llmMonitoringService;
+
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    @Autowired
+    private PromptBudget promptBudget;
     
     public Map<String, Object> generateKYBNoteWithActions(String profile, String txInsights, 
                                                           Map<String, Object> riskAssessment) {
+        return generateNote(profile, txInsights, riskAssessment, NoteRisk.of(riskAssessment), null);
+    }
+    
+    /**
+     * generateKYBNoteWithActions for the workflow's risk assessment (null if there is none), for a
+     * caller that waits at most budget (null for no limit) for the LLM; the call is not queued
+     * beyond it.
+     */
+    public Map<String, Object> generateKYBNoteWithActions(String profile, String txInsights,
+                                                          RiskAssessment riskAssessment,
+                                                          Duration budget) {
+        return generateNote(profile, txInsights, riskAssessment, NoteRisk.of(riskAssessment), budget);
+    }
+    
+    private Map<String, Object> generateNote(String profile, String txInsights, Object riskAssessment,
+                                             NoteRisk risk, Duration budget) {
+        ChatRequest request = buildNoteRequest(profile, txInsights, riskAssessment);
+        
+        // Token usage, latency and errors are recorded by the model listener
+        ChatResponse response = llmMonitoringService.callAs("kyb_note", budget, () -> chatModel.chat(request));
+        String responseText = response.aiMessage().text();
+        
+        return parseNote(responseText, profile, txInsights, risk);
+    }
+    
+    /**
+     * Streaming variant of generateKYBNoteWithActions: each token is handed to onToken as soon as
+     * the model produces it, and the structured kyb_note/recommended_actions are assembled once the
+     * response is complete. The tokens are the raw JSON completion, so callers showing them should
+     * treat them as a preview and use the returned map as the result.
+     *
+     * If the response has not completed within timeout (null for none), or the waiting thread is
+     * interrupted, this call stops listening: no further tokens reach onToken, and
+     * TimeoutException or InterruptedException is thrown. The provider stream itself is not
+     * aborted; it runs to its end in the background and holds its concurrency slot until then.
+     *
+     * Streamed responses bypass the LLM response cache.
+     */
+    public Map<String, Object> generateKYBNoteStreaming(String profile, String txInsights,
+                                                        RiskAssessment riskAssessment,
+                                                        Duration timeout,
+                                                        Consumer<String> onToken) throws TimeoutException, InterruptedException {
+        ChatRequest request = buildNoteRequest(profile, txInsights, riskAssessment);
+        
+        long startNanos = System.nanoTime();
+        AtomicLong firstTokenNanos = new AtomicLong(-1);
+        CompletableFuture<ChatResponse> completion = new CompletableFuture<>();
+        CancellableStreamingHandler handler = new CancellableStreamingHandler() {
+            @Override
+            public void onPartialResponse(String token) {
+                firstTokenNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    onToken.accept(token);
+                } catch (RuntimeException ignored) {
+                    // a disconnected client must not abort the generation
+                }
+            }
+            
+            @Override
+            public void onCompleteResponse(ChatResponse response) {
+                completion.complete(response);
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                completion.completeExceptionally(error);
+            }
+        };
+        
+        llmMonitoringService.callAs("kyb_note", timeout, () -> {
+            streamingChatModel.chat(request, handler);
+            return null;
+        });
+        
+        ChatResponse response;
+        try {
+            response = timeout != null
+                    ? completion.get(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    : completion.get();
+        } catch (TimeoutException | InterruptedException e) {
+            handler.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+        llmMonitoringService.recordStreamingTimings("kyb_note", firstTokenNanos.get(), System.nanoTime() - startNanos);
+        
+        return parseNote(response.aiMessage().text(), profile, txInsights, NoteRisk.of(riskAssessment));
+    }
+    
+    private ChatRequest buildNoteRequest(String profile, String txInsights, Object riskAssessment) {
         String systemPrompt = """
             You are a KYB Note & Action Plan Agent for KYB Early-Risk Radar.
             
@@ -48,58 +163,48 @@ public class KYBNoteAgent {
             Return ONLY valid JSON.
         """;
         
-        String userPrompt = String.format("""
+        // The score breakdown is arithmetic the note does not need; the band, triggers and
+        // reasoning carry the story
+        String userPrompt = promptBudget.render("kyb_note", systemPrompt, """
+            Risk Assessment: %s
+            
             Profile: %s
             
             Transaction Insights: %s
             
-            Risk Assessment: %s
-            
             Generate the KYB note and recommended actions.
-        """, profile, txInsights, riskAssessment.toString());
+        """,
+                PromptBudget.Input.of("risk_assessment", riskAssessment != null ? riskAssessment : Map.of(),
+                        "score_breakdown"),
+                PromptBudget.Input.of("profile", profile),
+                PromptBudget.Input.of("transaction_insights", txInsights));
         
-        ChatRequest request = ChatRequest.builder()
+        return ChatRequest.builder()
                 .messages(
                     SystemMessage.from(systemPrompt),
                     UserMessage.from(userPrompt)
                 )
                 .build();
-        
-        // Track LLM call
-        io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-        ChatResponse response = chatModel.chat(request);
-        String responseText = response.aiMessage().text();
-
-        // Record successful LLM call
-        llmMonitoringService.recordSuccessfulCall(
-            llmTimer,
-            "gpt-4o-mini", // model from config
-            200, // estimated prompt tokens
-            100, // estimated completion tokens
-            1000 // estimated duration in ms
-        );
-        
+    }
+    
+    private Map<String, Object> parseNote(String responseText, String profile, String txInsights, NoteRisk risk) {
         // Parse JSON from response
         String jsonStr = cleanJsonResponse(responseText);
         
         Map<String, Object> result;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> parsedResult = mapper.readValue(jsonStr, Map.class);
-            result = parsedResult;
+            result = jsonCodec.readMap(jsonStr);
         } catch (Exception e) {
             // Fallback: generate structured output
-            result = generateFallbackNote(profile, txInsights, riskAssessment);
+            result = fallbackNote(profile, txInsights, risk);
         }
         
         // Ensure required fields
         if (!result.containsKey("kyb_note")) {
-            result.put("kyb_note", generateNarrative(profile, txInsights, riskAssessment));
+            result.put("kyb_note", generateNarrative(profile, txInsights, risk));
         }
         if (!result.containsKey("recommended_actions")) {
-            result.put("recommended_actions", generateDefaultActions(riskAssessment));
+            result.put("recommended_actions", generateDefaultActions(risk));
         }
         
         return result;
@@ -119,16 +224,24 @@ public class KYBNoteAgent {
         return jsonStr.trim();
     }
     
-    private Map<String, Object> generateFallbackNote(String profile, String txInsights, 
-                                                     Map<String, Object> riskAssessment) {
+    /**
+     * Template note and rule-based actions, used when the LLM answer is unusable or does not
+     * arrive in time.
+     */
+    public Map<String, Object> generateFallbackNote(String profile, String txInsights, 
+                                                    RiskAssessment riskAssessment) {
+        return fallbackNote(profile, txInsights, NoteRisk.of(riskAssessment));
+    }
+    
+    private Map<String, Object> fallbackNote(String profile, String txInsights, NoteRisk risk) {
         Map<String, Object> result = new HashMap<>();
-        result.put("kyb_note", generateNarrative(profile, txInsights, riskAssessment));
-        result.put("recommended_actions", generateDefaultActions(riskAssessment));
+        result.put("kyb_note", generateNarrative(profile, txInsights, risk));
+        result.put("recommended_actions", generateDefaultActions(risk));
         return result;
     }
     
-    private String generateNarrative(String profile, String txInsights, Map<String, Object> riskAssessment) {
-        String band = (String) riskAssessment.getOrDefault("band", "AMBER");
+    private String generateNarrative(String profile, String txInsights, NoteRisk risk) {
+        String band = risk.band();
         return String.format(
             "KYB Risk Assessment: %s risk band identified. Profile analysis indicates %s. " +
             "Transaction pattern analysis shows %s. Key risk indicators: %s. " +
@@ -136,16 +249,15 @@ public class KYBNoteAgent {
             band,
             profile.length() > 100 ? profile.substring(0, 100) + "..." : profile,
             txInsights.length() > 150 ? txInsights.substring(0, 150) + "..." : txInsights,
-            riskAssessment.getOrDefault("triggers", new ArrayList<>()).toString(),
-            riskAssessment.getOrDefault("score", 20)
+            risk.triggers().toString(),
+            risk.score()
         );
     }
     
-    @SuppressWarnings("unchecked")
-    private List<String> generateDefaultActions(Map<String, Object> riskAssessment) {
+    private List<String> generateDefaultActions(NoteRisk risk) {
         List<String> actions = new ArrayList<>();
-        String band = (String) riskAssessment.getOrDefault("band", "AMBER");
-        List<String> triggers = (List<String>) riskAssessment.getOrDefault("triggers", new ArrayList<>());
+        String band = risk.band();
+        List<?> triggers = risk.triggers() instanceof List<?> list ? list : List.of();
         
         if (band.equals("RED")) {
             actions.add("Urgent: Schedule immediate KYB review meeting with customer");
@@ -178,10 +290,7 @@ public class KYBNoteAgent {
         // Parse riskJson string to Map if it's JSON, otherwise create a simple map
         Map<String, Object> riskAssessment;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> parsed = mapper.readValue(riskJson, Map.class);
-            riskAssessment = parsed;
+            riskAssessment = jsonCodec.readMap(riskJson);
         } catch (Exception e) {
             // If not valid JSON, create a simple map from the string
             riskAssessment = new HashMap<>();
@@ -194,4 +303,26 @@ public class KYBNoteAgent {
         Map<String, Object> result = generateKYBNoteWithActions(profile, txInsights, riskAssessment);
         return (String) result.getOrDefault("kyb_note", "");
     }
+    
+    /**
+     * The parts of a risk assessment the template note and default actions use.
+     */
+    private record NoteRisk(String band, Object triggers, Object score) {
+        
+        // Maps from MCP callers describe the assessment as band, triggers and score
+        static NoteRisk of(Map<String, Object> riskAssessment) {
+            return new NoteRisk((String) riskAssessment.getOrDefault("band", "AMBER"),
+                    riskAssessment.getOrDefault("triggers", new ArrayList<>()),
+                    riskAssessment.getOrDefault("score", 20));
+        }
+        
+        static NoteRisk of(RiskAssessment riskAssessment) {
+            if (riskAssessment == null) {
+                return new NoteRisk("AMBER", List.of(), 20);
+            }
+            return new NoteRisk(riskAssessment.riskBand(),
+                    riskAssessment.triggersFired().stream().map(RiskAssessment.TriggerFired::code).toList(),
+                    riskAssessment.score());
+        }
+    }
 }
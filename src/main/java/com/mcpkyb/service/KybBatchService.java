@@ -0,0 +1,198 @@
+package com.mcpkyb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs KYB for a list of customers with a bounded number of runs in flight, handing each
+ * per-customer result to the caller as soon as it finishes.
+ *
+ * Customers are started in priority order (HIGH-risk and overdue customers first) and run through
+ * KybPriorityScheduler, which shares slots fairly with other batches and async jobs. The requested
+ * concurrency is clamped to what the scheduler can grant the batch's priority classes, and the
+ * summary reports the clamped value.
+ */
+@Service
+public class KybBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybBatchService.class);
+
+    private final ConductorAgent conductorAgent;
+    private final KybPriorityScheduler scheduler;
+    private final int maxConcurrency;
+    private final int defaultConcurrency;
+
+    private final Counter succeededCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+
+    public KybBatchService(ConductorAgent conductorAgent,
+                           KybPriorityScheduler scheduler,
+                           MeterRegistry meterRegistry,
+                           @Value("${kyb.batch.max-concurrency:16}") int maxConcurrency,
+                           @Value("${kyb.batch.default-concurrency:4}") int defaultConcurrency) {
+        this.conductorAgent = conductorAgent;
+        this.scheduler = scheduler;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.defaultConcurrency = Math.max(1, Math.min(defaultConcurrency, this.maxConcurrency));
+
+        this.succeededCounter = Counter.builder("kyb.batch.customers")
+                .description("Customers processed by batch KYB runs")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("kyb.batch.customers")
+                .description("Customers processed by batch KYB runs")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("kyb.batch.duration")
+                .description("Wall time of batch KYB runs")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs KYB for every customer, calling resultConsumer once per customer in completion order and
+     * returning the batch summary. resultConsumer is only ever called from the calling thread.
+     */
+    public Map<String, Object> runBatch(List<String> customerIds,
+                                        Integer requestedConcurrency,
+                                        Consumer<Map<String, Object>> resultConsumer) throws InterruptedException {
+        long startNanos = System.nanoTime();
+
+        List<PrioritizedCustomer> queue = customerIds.stream()
+                .map(customerId -> new PrioritizedCustomer(customerId, scheduler.classify(customerId)))
+                .sorted(Comparator.comparing(PrioritizedCustomer::priority))
+                .toList();
+        int requested = resolveConcurrency(requestedConcurrency);
+        // More runs in flight than the scheduler will start would only wait in its queue
+        Set<KybPriorityScheduler.Priority> priorities = EnumSet.noneOf(KybPriorityScheduler.Priority.class);
+        queue.forEach(customer -> priorities.add(customer.priority()));
+        int concurrency = Math.min(requested, scheduler.maxConcurrency(priorities));
+        // Journey classification goes out in multi-customer requests, in priority order, a window
+        // of customers ahead of the runs that need it; each run waits for its customer's answer.
+        int journeyChunk = conductorAgent.journeyClassificationBatchSize();
+        int journeyLookahead = Math.max(concurrency, journeyChunk);
+        int prefetched = 0;
+        BlockingQueue<Map<String, Object>> completionQueue = new LinkedBlockingQueue<>();
+        int submitted = 0;
+        int completed = 0;
+        int succeeded = 0;
+        int failed = 0;
+
+        while (submitted < customerIds.size() && submitted < concurrency) {
+            prefetched = prefetchJourneys(queue, prefetched, submitted + journeyLookahead, journeyChunk);
+            submit(completionQueue, queue.get(submitted++));
+        }
+
+        while (completed < submitted) {
+            Map<String, Object> line = completionQueue.take();
+            completed++;
+            if ("OK".equals(line.get("status"))) {
+                succeeded++;
+                succeededCounter.increment();
+            } else {
+                failed++;
+                failedCounter.increment();
+            }
+            resultConsumer.accept(line);
+
+            if (submitted < customerIds.size()) {
+                prefetched = prefetchJourneys(queue, prefetched, submitted + journeyLookahead, journeyChunk);
+                submit(completionQueue, queue.get(submitted++));
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        batchTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("type", "summary");
+        summary.put("total", customerIds.size());
+        summary.put("succeeded", succeeded);
+        summary.put("failed", failed);
+        summary.put("concurrency", concurrency);
+        summary.put("requested_concurrency", requested);
+        summary.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        summary.put("customers_per_sec", elapsedSeconds > 0 ? completed / elapsedSeconds : 0);
+
+        logger.info("Batch KYB completed - total: {}, succeeded: {}, failed: {}, concurrency: {} (requested {}), elapsed: {}ms",
+                customerIds.size(), succeeded, failed, concurrency, requested, summary.get("elapsed_ms"));
+        return summary;
+    }
+
+    private int resolveConcurrency(Integer requestedConcurrency) {
+        if (requestedConcurrency == null || requestedConcurrency < 1) {
+            return defaultConcurrency;
+        }
+        return Math.min(requestedConcurrency, maxConcurrency);
+    }
+
+    /**
+     * Prefetches journey classifications a whole chunk at a time until every customer before index
+     * until is covered, so only a few chunk requests are ever ahead of the batch's own runs.
+     * Returns the index of the first customer not yet prefetched.
+     */
+    private int prefetchJourneys(List<PrioritizedCustomer> queue, int prefetched, int until, int chunk) {
+        while (prefetched < queue.size() && prefetched < until) {
+            int end = Math.min(queue.size(), prefetched + chunk);
+            conductorAgent.prefetchJourneyClassifications(queue.subList(prefetched, end).stream()
+                    .map(PrioritizedCustomer::customerId)
+                    .toList());
+            prefetched = end;
+        }
+        return prefetched;
+    }
+
+    private void submit(BlockingQueue<Map<String, Object>> completionQueue, PrioritizedCustomer customer) {
+        scheduler.submit(customer.priority(), () -> runOne(customer))
+                .whenComplete((line, error) -> {
+                    if (error != null) {
+                        // runOne never throws, so this only happens if the task itself could not run
+                        line = new HashMap<>();
+                        line.put("type", "result");
+                        line.put("customer_id", customer.customerId());
+                        line.put("status", "FAILED");
+                        line.put("error", "KYB workflow failed");
+                        line.put("message", String.valueOf(error));
+                    }
+                    completionQueue.add(line);
+                });
+    }
+
+    private Map<String, Object> runOne(PrioritizedCustomer customer) {
+        String customerId = customer.customerId();
+        Map<String, Object> line = new HashMap<>();
+        line.put("type", "result");
+        line.put("customer_id", customerId);
+        line.put("priority", customer.priority().name());
+        try {
+            line.put("result", conductorAgent.runKYB(customerId));
+            line.put("status", "OK");
+        } catch (Exception e) {
+            line.put("status", "FAILED");
+            line.put("error", "KYB workflow failed");
+            line.put("message", e.getMessage());
+            line.put("exception_type", e.getClass().getSimpleName());
+        }
+        return line;
+    }
+
+    private record PrioritizedCustomer(String customerId, KybPriorityScheduler.Priority priority) {
+    }
+}
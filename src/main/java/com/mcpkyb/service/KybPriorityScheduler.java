@@ -0,0 +1,236 @@
+package com.mcpkyb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcpkyb.rules.CompiledRuleSet;
+import com.mcpkyb.rules.RulesRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Priority-aware dispatcher for queued KYB runs (async jobs and batch sweeps).
+ *
+ * Each customer is put in a priority class from its CRM record: HIGH for customers rated HIGH or
+ * overdue for review under the active rules, MEDIUM for the remaining MEDIUM-rated ones, LOW for
+ * everyone else. Each class has its own FIFO queue. Free slots are handed out by smooth weighted
+ * round robin across the classes that have work waiting and are under their own concurrency cap,
+ * so HIGH work goes first without starving LOW work entirely.
+ */
+@Service
+public class KybPriorityScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybPriorityScheduler.class);
+
+    public enum Priority {
+        HIGH,
+        MEDIUM,
+        LOW
+    }
+
+    private final ReferenceDataStore referenceDataStore;
+    private final RulesRepository rulesRepository;
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+
+    private final Map<Priority, ClassQueue> classes = new EnumMap<>(Priority.class);
+    private int running;
+
+    public KybPriorityScheduler(ReferenceDataStore referenceDataStore,
+                                RulesRepository rulesRepository,
+                                @Qualifier("kybStepExecutor") ExecutorService executor,
+                                MeterRegistry meterRegistry,
+                                @Value("${kyb.scheduler.max-concurrency:8}") int maxConcurrency,
+                                @Value("${kyb.scheduler.high.weight:6}") int highWeight,
+                                @Value("${kyb.scheduler.high.max-concurrency:8}") int highMaxConcurrency,
+                                @Value("${kyb.scheduler.medium.weight:3}") int mediumWeight,
+                                @Value("${kyb.scheduler.medium.max-concurrency:6}") int mediumMaxConcurrency,
+                                @Value("${kyb.scheduler.low.weight:1}") int lowWeight,
+                                @Value("${kyb.scheduler.low.max-concurrency:4}") int lowMaxConcurrency) {
+        this.referenceDataStore = referenceDataStore;
+        this.rulesRepository = rulesRepository;
+        this.executor = executor;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+
+        classes.put(Priority.HIGH, new ClassQueue(highWeight, highMaxConcurrency));
+        classes.put(Priority.MEDIUM, new ClassQueue(mediumWeight, mediumMaxConcurrency));
+        classes.put(Priority.LOW, new ClassQueue(lowWeight, lowMaxConcurrency));
+
+        for (Map.Entry<Priority, ClassQueue> entry : classes.entrySet()) {
+            String priority = entry.getKey().name().toLowerCase(Locale.ROOT);
+            ClassQueue queue = entry.getValue();
+            Gauge.builder("kyb.scheduler.queue_depth", this, scheduler -> scheduler.queued(queue))
+                    .description("KYB runs waiting for a slot")
+                    .tag("priority", priority)
+                    .register(meterRegistry);
+            Gauge.builder("kyb.scheduler.running", this, scheduler -> scheduler.running(queue))
+                    .description("KYB runs currently executing")
+                    .tag("priority", priority)
+                    .register(meterRegistry);
+            queue.waitTimer = Timer.builder("kyb.scheduler.wait")
+                    .description("Time KYB runs spend queued before starting")
+                    .tag("priority", priority)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Priority class for a customer from its CRM risk rating and last review date.
+     */
+    public Priority classify(String customerId) {
+        JsonNode customer = referenceDataStore.findCustomer(customerId);
+        if (customer == null) {
+            return Priority.LOW;
+        }
+        String riskLevel = customer.path("internal_risk_rating").asText("MEDIUM").toUpperCase(Locale.ROOT);
+        boolean highRisk = "HIGH".equals(riskLevel);
+        boolean overdue = rulesRepository.current().compiled().isReviewOverdue(
+                CompiledRuleSet.monthsSinceReview(customer.path("kyb_last_review_date").asText(""), LocalDate.now()),
+                highRisk);
+        if (highRisk || overdue) {
+            return Priority.HIGH;
+        }
+        return "MEDIUM".equals(riskLevel) ? Priority.MEDIUM : Priority.LOW;
+    }
+
+    /**
+     * Most runs of the given priority classes the scheduler will have in flight at once: the
+     * classes' own caps added up, or the global cap if that is lower. Other queued work (async
+     * jobs, other batches) shares the same slots, so this is an upper bound.
+     */
+    public int maxConcurrency(Set<Priority> priorities) {
+        int classCaps = 0;
+        for (Map.Entry<Priority, ClassQueue> entry : classes.entrySet()) {
+            if (priorities.contains(entry.getKey())) {
+                classCaps += entry.getValue().maxConcurrency;
+            }
+        }
+        return Math.max(1, Math.min(maxConcurrency, classCaps));
+    }
+
+    /**
+     * Queues a KYB run for the customer in its priority class. The returned future completes with
+     * the task's result once a slot has come free and the task has run.
+     */
+    public <T> CompletableFuture<T> submit(String customerId, Callable<T> task) {
+        return submit(classify(customerId), task);
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ClassQueue queue = classes.get(priority);
+        synchronized (this) {
+            queue.pending.add(new Pending(System.nanoTime(), future, () -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+            dispatch();
+        }
+        return future;
+    }
+
+    /**
+     * Starts queued work while there are free slots. Caller must hold the lock.
+     */
+    private void dispatch() {
+        while (running < maxConcurrency) {
+            ClassQueue next = pickNext();
+            if (next == null) {
+                return;
+            }
+            Pending pending = next.pending.poll();
+            next.running++;
+            running++;
+            next.waitTimer.record(System.nanoTime() - pending.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            try {
+                executor.execute(() -> {
+                    try {
+                        pending.task().run();
+                    } finally {
+                        release(next);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Executor shut down: fail the run rather than leave its caller waiting forever
+                logger.warn("Could not start queued KYB run: {}", e.getMessage());
+                next.running--;
+                running--;
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Smooth weighted round robin over the eligible classes: each gains its weight, the richest is
+     * picked and pays back the total. Gives each class its weighted share in an evenly interleaved
+     * order rather than in bursts.
+     */
+    private ClassQueue pickNext() {
+        ClassQueue best = null;
+        int totalWeight = 0;
+        for (ClassQueue queue : classes.values()) {
+            if (queue.pending.isEmpty() || queue.running >= queue.maxConcurrency) {
+                continue;
+            }
+            queue.currentWeight += queue.weight;
+            totalWeight += queue.weight;
+            if (best == null || queue.currentWeight > best.currentWeight) {
+                best = queue;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        }
+        return best;
+    }
+
+    private synchronized void release(ClassQueue queue) {
+        queue.running--;
+        running--;
+        dispatch();
+    }
+
+    private synchronized int queued(ClassQueue queue) {
+        return queue.pending.size();
+    }
+
+    private synchronized int running(ClassQueue queue) {
+        return queue.running;
+    }
+
+    private record Pending(long enqueuedNanos, CompletableFuture<?> future, Runnable task) {
+    }
+
+    private static final class ClassQueue {
+
+        final int weight;
+        final int maxConcurrency;
+        final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        int running;
+        int currentWeight;
+        Timer waitTimer;
+
+        ClassQueue(int weight, int maxConcurrency) {
+            this.weight = Math.max(1, weight);
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+        }
+    }
+}
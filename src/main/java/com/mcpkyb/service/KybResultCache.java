@@ -0,0 +1,298 @@
+package com.mcpkyb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcpkyb.utils.JsonCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed cache of ConductorAgent.runKYB results.
+ *
+ * The key is a SHA-256 over the customer's CRM record, parties, transactions and the active rules
+ * checksum, so a cached result is only reused while every input slice is unchanged. Entries are
+ * held in a size-bounded LRU map and, when kyb.cache.result.file is set, saved to a local file so
+ * they survive restarts. The file is rewritten off the request path at most once per
+ * kyb.cache.result.flush-interval when something changed, and once more on shutdown.
+ */
+@Service
+public class KybResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybResultCache.class);
+
+    private final ReferenceDataStore referenceDataStore;
+    private final JsonCodec jsonCodec;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Path persistenceFile;
+    private final Duration flushInterval;
+
+    private final Map<String, CachedResult> entries;
+    private final Object persistenceLock = new Object();
+    private boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public KybResultCache(ReferenceDataStore referenceDataStore,
+                          JsonCodec jsonCodec,
+                          MeterRegistry meterRegistry,
+                          @Value("${kyb.cache.result.enabled:true}") boolean enabled,
+                          @Value("${kyb.cache.result.max-entries:1000}") int maxEntries,
+                          @Value("${kyb.cache.result.file:}") String persistenceFile,
+                          @Value("${kyb.cache.result.flush-interval:30s}") Duration flushInterval) {
+        this.referenceDataStore = referenceDataStore;
+        this.jsonCodec = jsonCodec;
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.persistenceFile = persistenceFile == null || persistenceFile.isBlank() ? null : Path.of(persistenceFile);
+        this.flushInterval = flushInterval;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > KybResultCache.this.maxEntries;
+            }
+        };
+
+        this.hitCounter = Counter.builder("kyb.result_cache.requests")
+                .description("runKYB result cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("kyb.result_cache.requests")
+                .description("runKYB result cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        Gauge.builder("kyb.result_cache.size", this, KybResultCache::size)
+                .description("Number of cached runKYB results")
+                .register(meterRegistry);
+        Gauge.builder("kyb.result_cache.hit_ratio", this, KybResultCache::hitRatio)
+                .description("Fraction of runKYB lookups served from the result cache")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() {
+        if (!enabled || persistenceFile == null) {
+            return;
+        }
+        loadPersistedEntries();
+        long intervalMs = Math.max(1000, flushInterval.toMillis());
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kyb-result-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flush();
+        }
+    }
+
+    private void loadPersistedEntries() {
+        if (!Files.exists(persistenceFile)) {
+            return;
+        }
+        try {
+            JsonNode root = jsonCodec.mapper().readTree(persistenceFile.toFile());
+            synchronized (entries) {
+                for (JsonNode entry : root.path("entries")) {
+                    entries.put(entry.path("key").asText(),
+                            new CachedResult(entry.path("result").asText(), Instant.parse(entry.path("cached_at").asText())));
+                }
+            }
+            logger.info("Loaded {} cached KYB results from {}", size(), persistenceFile);
+        } catch (Exception e) {
+            logger.warn("Could not load KYB result cache from {}: {}", persistenceFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the content key for a customer's current inputs under the given rules checksum, or
+     * null if the customer is unknown or caching is disabled.
+     */
+    public String keyFor(String customerId, String rulesChecksum) {
+        if (!enabled) {
+            return null;
+        }
+        return inputKey(customerId, rulesChecksum);
+    }
+
+    /**
+     * Hash of a customer's current inputs under the given rules checksum, regardless of whether
+     * caching is enabled, or null if the customer is unknown.
+     */
+    public String inputKey(String customerId, String rulesChecksum) {
+        JsonNode customer = referenceDataStore.findCustomer(customerId);
+        if (customer == null) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        update(digest, customerId);
+        update(digest, customer.toString());
+        update(digest, referenceDataStore.getParties(customerId).toString());
+        update(digest, referenceDataStore.getTransactions(customerId).toString());
+        update(digest, rulesChecksum);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns a private copy of the cached result for the key, if present.
+     */
+    public Optional<Lookup> get(String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        CachedResult cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        try {
+            Map<String, Object> result = jsonCodec.readMap(cached.json());
+            hitCounter.increment();
+            return Optional.of(new Lookup(result, cached.cachedAt()));
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable cached KYB result {}: {}", key, e.getMessage());
+            synchronized (entries) {
+                entries.remove(key);
+                dirty = true;
+            }
+            missCounter.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * True if a result is cached under the key, without counting a lookup.
+     */
+    public boolean contains(String key) {
+        if (key == null) {
+            return false;
+        }
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    public void put(String key, Map<String, Object> result) {
+        if (key == null) {
+            return;
+        }
+        try {
+            CachedResult cached = new CachedResult(jsonCodec.writeMap(result), Instant.now());
+            synchronized (entries) {
+                entries.put(key, cached);
+                dirty = true;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not cache KYB result {}: {}", key, e.getMessage());
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total > 0 ? hits / total : 0;
+    }
+
+    /**
+     * Writes the cache to its file if anything changed since the last write.
+     */
+    private void flush() {
+        if (persistenceFile == null) {
+            return;
+        }
+        // Held across snapshot and write so a later snapshot is never overwritten by an earlier one
+        synchronized (persistenceLock) {
+            List<Map<String, Object>> snapshot = new ArrayList<>();
+            synchronized (entries) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                for (Map.Entry<String, CachedResult> entry : entries.entrySet()) {
+                    Map<String, Object> record = new LinkedHashMap<>();
+                    record.put("key", entry.getKey());
+                    record.put("cached_at", entry.getValue().cachedAt().toString());
+                    record.put("result", entry.getValue().json());
+                    snapshot.add(record);
+                }
+            }
+            try {
+                Path parent = persistenceFile.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Path tempFile = Files.createTempFile(parent, "kyb-result-cache", ".tmp");
+                jsonCodec.mapper().writeValue(tempFile.toFile(), Map.of("entries", snapshot));
+                Files.move(tempFile, persistenceFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warn("Could not persist KYB result cache to {}: {}", persistenceFile, e.getMessage());
+                synchronized (entries) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private record CachedResult(String json, Instant cachedAt) {
+    }
+
+    /**
+     * A cache hit: a private copy of the result and the time it was first computed.
+     */
+    public record Lookup(Map<String, Object> result, Instant cachedAt) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.mcpkyb.service;
+
+import com.mcpkyb.utils.JsonCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent runKYB calls for the same customer and rules version into one computation.
+ *
+ * The first caller for a key runs the workflow; callers arriving while it is in flight wait for
+ * that run instead of starting their own LLM chain, and each gets a private copy of the result.
+ * The key is dropped as soon as the run finishes, so later calls start fresh (and normally hit
+ * KybResultCache). Failures are shared too: every waiter sees the leader's exception.
+ */
+@Service
+public class KybSingleFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(KybSingleFlight.class);
+
+    private final JsonCodec jsonCodec;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    public KybSingleFlight(JsonCodec jsonCodec, MeterRegistry meterRegistry) {
+        this.jsonCodec = jsonCodec;
+        this.coalescedCounter = Counter.builder("kyb.singleflight.coalesced")
+                .description("runKYB calls that waited for an identical in-flight run instead of starting their own")
+                .register(meterRegistry);
+        Gauge.builder("kyb.singleflight.in_flight", inFlight, Map::size)
+                .description("Distinct customer/rules runs currently in flight")
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface Workflow {
+        Map<String, Object> run() throws IOException;
+    }
+
+    /**
+     * Result of a coalesced call; leader is false when the result came from another caller's run.
+     */
+    public record Outcome(Map<String, Object> result, boolean leader) {
+    }
+
+    public Outcome execute(String key, Workflow workflow) throws IOException {
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCounter.increment();
+            logger.debug("Joining in-flight KYB run {}", key);
+            return new Outcome(jsonCodec.readMap(awaitShared(existing)), false);
+        }
+
+        try {
+            Map<String, Object> result = workflow.run();
+            // Waiters get their own copy, deserialized from a snapshot taken before the leader
+            // hands its map back to the caller
+            flight.complete(jsonCodec.writeMap(result));
+            return new Outcome(result, true);
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static String awaitShared(CompletableFuture<String> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for in-flight KYB run", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw new IOException(ioException.getMessage(), ioException);
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
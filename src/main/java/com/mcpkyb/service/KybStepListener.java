@@ -0,0 +1,21 @@
+package com.mcpkyb.service;
+
+import java.util.Map;
+
+/**
+ * Receives each ConductorAgent step result as soon as it is available, for callers that want to
+ * show progress before the whole workflow finishes.
+ *
+ * Steps: journey_type, entity_profile (entity_profile and party_summary), group_context,
+ * transaction_insights, risk_assessment and kyb_note (kyb_note and recommended_actions). While the
+ * note is generated, kyb_note_token steps carry each raw completion token as delta. Callbacks
+ * may arrive on workflow threads and in any order between independent steps; exceptions thrown by
+ * a listener are ignored by the workflow.
+ */
+@FunctionalInterface
+public interface KybStepListener {
+
+    KybStepListener NONE = (step, payload) -> { };
+
+    void onStep(String step, Map<String, Object> payload);
+}
@@ -8,7 +8,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Service for monitoring LLM (Large Language Model) operations including:
@@ -55,11 +61,24 @@ public class LLMMonitoringService {
 
     private final LangSmithManualTracing langSmithTracing;
 
-    // Cost rates per 1K tokens (in USD)
-    private static final double GPT_4_INPUT_COST_PER_1K = 0.03;
-    private static final double GPT_4_OUTPUT_COST_PER_1K = 0.06;
-    private static final double GPT_35_TURBO_INPUT_COST_PER_1K = 0.0015;
-    private static final double GPT_35_TURBO_OUTPUT_COST_PER_1K = 0.002;
+    // Cost rates per 1K tokens (in USD), input then output. Matched by model name prefix, longest
+    // first, so dated snapshots (gpt-4o-mini-2024-07-18) price like their family.
+    private static final Map<String, double[]> COST_PER_1K = new LinkedHashMap<>();
+    static {
+        COST_PER_1K.put("gpt-4.1-nano", new double[] {0.0001, 0.0004});
+        COST_PER_1K.put("gpt-4.1-mini", new double[] {0.0004, 0.0016});
+        COST_PER_1K.put("gpt-4.1", new double[] {0.002, 0.008});
+        COST_PER_1K.put("gpt-4o-mini", new double[] {0.00015, 0.0006});
+        COST_PER_1K.put("gpt-4o", new double[] {0.0025, 0.01});
+        COST_PER_1K.put("gpt-4-turbo", new double[] {0.01, 0.03});
+        COST_PER_1K.put("gpt-4", new double[] {0.03, 0.06});
+        COST_PER_1K.put("gpt-3.5-turbo", new double[] {0.0015, 0.002});
+    }
+
+    public static final String UNKNOWN_AGENT = "unknown";
+
+    private static final ThreadLocal<String> CURRENT_AGENT = new ThreadLocal<>();
+    private static final ThreadLocal<Instant> CURRENT_DEADLINE = new ThreadLocal<>();
 
     public LLMMonitoringService(MeterRegistry meterRegistry, LangSmithManualTracing langSmithTracing) {
         this.meterRegistry = meterRegistry;
@@ -125,16 +144,70 @@ public class LLMMonitoringService {
     }
 
     /**
-     * Records the start of an LLM call
+     * Runs an LLM call on behalf of the named agent, so the call recorded by the model listener is
+     * attributed to it.
      */
-    public Timer.Sample startLLMCall() {
-        return Timer.start(meterRegistry);
+    public <T> T callAs(String agent, Supplier<T> call) {
+        return callAs(agent, null, call);
+    }
+
+    /**
+     * Runs an LLM call on behalf of the named agent for a caller that stops waiting for the answer
+     * after budget (null for no limit). The concurrency limiter reads what is left of it through
+     * currentBudget, so the call neither queues past that point nor starts once it has passed.
+     */
+    public <T> T callAs(String agent, Duration budget, Supplier<T> call) {
+        String previous = CURRENT_AGENT.get();
+        Instant previousDeadline = CURRENT_DEADLINE.get();
+        CURRENT_AGENT.set(agent);
+        if (budget != null) {
+            CURRENT_DEADLINE.set(Instant.now().plus(budget));
+        } else {
+            CURRENT_DEADLINE.remove();
+        }
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                CURRENT_AGENT.set(previous);
+            } else {
+                CURRENT_AGENT.remove();
+            }
+            if (previousDeadline != null) {
+                CURRENT_DEADLINE.set(previousDeadline);
+            } else {
+                CURRENT_DEADLINE.remove();
+            }
+        }
     }
 
     /**
-     * Records a successful LLM call with token usage and model information
+     * The agent whose LLM call is running on this thread, or "unknown" outside callAs.
      */
-    public void recordSuccessfulCall(Timer.Sample timerSample, String model, int promptTokens, int completionTokens, long durationMs) {
+    public String currentAgent() {
+        String agent = CURRENT_AGENT.get();
+        return agent != null ? agent : UNKNOWN_AGENT;
+    }
+
+    /**
+     * Time left for the LLM call running on this thread (never negative), or null if its caller
+     * set no budget.
+     */
+    public Duration currentBudget() {
+        Instant deadline = CURRENT_DEADLINE.get();
+        if (deadline == null) {
+            return null;
+        }
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Records a successful LLM call with the token usage, model and finish reason the provider
+     * reported.
+     */
+    public void recordSuccessfulCall(String agent, String model, int promptTokens, int completionTokens,
+                                     long durationNanos, String finishReason) {
         totalLLMCalls.increment();
         successfulLLMCalls.increment();
 
@@ -160,15 +233,34 @@ public class LLMMonitoringService {
         recordModelUsage(model);
 
         // Record timing
-        timerSample.stop(llmCallTimer);
+        llmCallTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+
+        // Per-agent, per-model breakdown
+        agentTokens(agent, model, "prompt").record(promptTokens);
+        agentTokens(agent, model, "completion").record(completionTokens);
+        Counter.builder("llm.agent.cost")
+                .description("LLM API costs in USD by agent and model")
+                .tag("agent", agent)
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment(cost);
+        Timer.builder("llm.agent.duration")
+                .description("Wall time of LLM calls by agent, model and finish reason")
+                .tag("agent", agent)
+                .tag("model", model)
+                .tag("finish_reason", finishReason)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
 
-        logger.debug("LLM call completed - Model: {}, Prompt tokens: {}, Completion tokens: {}, Total tokens: {}, Cost: ${}, Duration: {}ms",
-                model, promptTokens, completionTokens, totalTokens, String.format("%.6f", cost), durationMs);
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        logger.debug("LLM call completed - Agent: {}, Model: {}, Prompt tokens: {}, Completion tokens: {}, Total tokens: {}, Cost: ${}, Duration: {}ms, Finish reason: {}",
+                agent, model, promptTokens, completionTokens, totalTokens, String.format("%.6f", cost), durationMs, finishReason);
 
         // Send trace to LangSmith
         try {
             langSmithTracing.traceLLMCall(
-                "LLM call for model: " + model,
+                "LLM call by " + agent + " for model: " + model,
                 "Response generated with " + completionTokens + " tokens",
                 promptTokens,
                 completionTokens,
@@ -183,7 +275,7 @@ public class LLMMonitoringService {
     /**
      * Records a failed LLM call
      */
-    public void recordFailedCall(Timer.Sample timerSample, String model, String errorType, long durationMs) {
+    public void recordFailedCall(String agent, String model, String errorType, long durationNanos) {
         totalLLMCalls.increment();
         failedLLMCalls.increment();
 
@@ -191,16 +283,50 @@ public class LLMMonitoringService {
         recordModelUsage(model);
 
         // Record timing
-        timerSample.stop(llmCallTimer);
+        llmCallTimer.record(durationNanos, TimeUnit.NANOSECONDS);
 
         // Record error as a counter with tags
         Counter.builder("llm.errors")
+                .tag("agent", agent)
                 .tag("model", model)
                 .tag("error_type", errorType)
                 .register(meterRegistry)
                 .increment();
 
-        logger.warn("LLM call failed - Model: {}, Error: {}, Duration: {}ms", model, errorType, durationMs);
+        logger.warn("LLM call failed - Agent: {}, Model: {}, Error: {}, Duration: {}ms",
+                agent, model, errorType, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    private DistributionSummary agentTokens(String agent, String model, String type) {
+        return DistributionSummary.builder("llm.agent.tokens")
+                .description("Tokens per LLM call by agent, model and token type")
+                .tag("agent", agent)
+                .tag("model", model)
+                .tag("type", type)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the latency profile of a streamed completion: how long the caller waited for the
+     * first token, and how long the whole generation took. A negative time to first token means
+     * the stream produced no tokens and only the total is recorded.
+     */
+    public void recordStreamingTimings(String agent, long timeToFirstTokenNanos, long totalNanos) {
+        if (timeToFirstTokenNanos >= 0) {
+            Timer.builder("llm.stream.time_to_first_token")
+                    .description("Time from sending a streaming LLM request to receiving its first token")
+                    .tag("agent", agent)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(timeToFirstTokenNanos, TimeUnit.NANOSECONDS);
+        }
+        Timer.builder("llm.stream.generation")
+                .description("Time from sending a streaming LLM request to receiving its complete response")
+                .tag("agent", agent)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(totalNanos, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -220,22 +346,18 @@ public class LLMMonitoringService {
      * Calculates the cost of an LLM call based on model and token usage
      */
     private double calculateCost(String model, int promptTokens, int completionTokens) {
-        double inputCostPer1K, outputCostPer1K;
-
-        if (model.toLowerCase().contains("gpt-4")) {
-            inputCostPer1K = GPT_4_INPUT_COST_PER_1K;
-            outputCostPer1K = GPT_4_OUTPUT_COST_PER_1K;
-        } else if (model.toLowerCase().contains("gpt-3.5")) {
-            inputCostPer1K = GPT_35_TURBO_INPUT_COST_PER_1K;
-            outputCostPer1K = GPT_35_TURBO_OUTPUT_COST_PER_1K;
-        } else {
-            // Default to GPT-3.5 pricing for unknown models
-            inputCostPer1K = GPT_35_TURBO_INPUT_COST_PER_1K;
-            outputCostPer1K = GPT_35_TURBO_OUTPUT_COST_PER_1K;
+        // Default to GPT-3.5 pricing for unknown models
+        double[] costPer1K = COST_PER_1K.get("gpt-3.5-turbo");
+        String normalized = model.toLowerCase();
+        for (Map.Entry<String, double[]> entry : COST_PER_1K.entrySet()) {
+            if (normalized.startsWith(entry.getKey())) {
+                costPer1K = entry.getValue();
+                break;
+            }
         }
 
-        double inputCost = (promptTokens / 1000.0) * inputCostPer1K;
-        double outputCost = (completionTokens / 1000.0) * outputCostPer1K;
+        double inputCost = (promptTokens / 1000.0) * costPer1K[0];
+        double outputCost = (completionTokens / 1000.0) * costPer1K[1];
 
         return inputCost + outputCost;
     }
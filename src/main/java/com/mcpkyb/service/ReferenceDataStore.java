@@ -0,0 +1,247 @@
+package com.mcpkyb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.mcpkyb.utils.JsonLoader;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory reference data store for the KYB agents.
+ *
+ * crm.json, parties.json, transactions.json and companyHouse.json are parsed once at startup and
+ * held as immutable snapshots indexed by customer_id, so per-request lookups are a hash probe
+ * instead of a classpath read, a full JSON parse and a linear scan. rules.json is owned by
+ * RulesRepository.
+ *
+ * The JsonNode instances handed out are shared between requests and must be treated as read-only.
+ */
+@Service
+public class ReferenceDataStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataStore.class);
+
+    private final Snapshot snapshot;
+
+    private final Timer customerLookupTimer;
+    private final Timer partiesLookupTimer;
+    private final Timer transactionsLookupTimer;
+    private final Timer businessLookupTimer;
+
+    public ReferenceDataStore(MeterRegistry meterRegistry) {
+        this.snapshot = loadSnapshot();
+
+        this.customerLookupTimer = lookupTimer(meterRegistry, "crm");
+        this.partiesLookupTimer = lookupTimer(meterRegistry, "parties");
+        this.transactionsLookupTimer = lookupTimer(meterRegistry, "transactions");
+        this.businessLookupTimer = lookupTimer(meterRegistry, "company_house");
+
+        Gauge.builder("kyb.reference_data.heap_bytes", snapshot, Snapshot::estimatedHeapBytes)
+                .description("Estimated heap footprint of the reference data snapshot")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        Gauge.builder("kyb.reference_data.customers", snapshot, s -> s.customers().size())
+                .description("Number of customers indexed in the reference data snapshot")
+                .register(meterRegistry);
+
+        logger.info("Reference data loaded - customers: {}, estimated heap: {} bytes",
+                snapshot.customers().size(), snapshot.estimatedHeapBytes());
+    }
+
+    /**
+     * Returns the CRM record for the customer, or null if the customer is unknown.
+     */
+    public JsonNode findCustomer(String customerId) {
+        return customerLookupTimer.record(() -> snapshot.customers().get(customerId));
+    }
+
+    /**
+     * Returns the CRM record for the customer, failing if the customer is unknown.
+     */
+    public JsonNode getCustomer(String customerId) throws IOException {
+        JsonNode customer = findCustomer(customerId);
+        if (customer == null) {
+            throw new IOException("Customer not found: " + customerId);
+        }
+        return customer;
+    }
+
+    /**
+     * Returns all CRM records in file order.
+     */
+    public Collection<JsonNode> getCustomers() {
+        return snapshot.customers().values();
+    }
+
+    /**
+     * Returns the party array for the customer, or a MissingNode if none is on file.
+     */
+    public JsonNode getParties(String customerId) {
+        return partiesLookupTimer.record(() -> orMissing(snapshot.parties().get(customerId)));
+    }
+
+    /**
+     * Returns the transaction record for the customer, or a MissingNode if none is on file.
+     */
+    public JsonNode getTransactions(String customerId) {
+        return transactionsLookupTimer.record(() -> orMissing(snapshot.transactions().get(customerId)));
+    }
+
+    /**
+     * Returns the Companies House / Experian business record, or a MissingNode if none is on file.
+     */
+    public JsonNode getBusiness(String customerId) {
+        return businessLookupTimer.record(() -> orMissing(snapshot.businesses().get(customerId)));
+    }
+
+    /**
+     * Other customers with a party of the same name in parties.json (a shared director, owner or
+     * signatory). Names are compared case-insensitively, so this is a hint, not a match.
+     */
+    public Set<String> customersSharingParties(String customerId) {
+        Set<String> linked = new HashSet<>();
+        for (JsonNode party : snapshot.parties().getOrDefault(customerId, MissingNode.getInstance())) {
+            linked.addAll(snapshot.customersByPartyName().getOrDefault(partyNameKey(party), Set.of()));
+        }
+        linked.remove(customerId);
+        return linked;
+    }
+
+    private static Timer lookupTimer(MeterRegistry meterRegistry, String dataset) {
+        return Timer.builder("kyb.reference_data.lookup")
+                .description("Latency of reference data lookups by customer_id")
+                .tag("dataset", dataset)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static JsonNode orMissing(JsonNode node) {
+        return node != null ? node : MissingNode.getInstance();
+    }
+
+    private static Snapshot loadSnapshot() {
+        try {
+            JsonNode crm = JsonLoader.loadJson("crm.json");
+            JsonNode parties = JsonLoader.loadJson("parties.json");
+            JsonNode transactions = JsonLoader.loadJson("transactions.json");
+            JsonNode companyHouse = JsonLoader.loadJson("companyHouse.json");
+
+            Map<String, JsonNode> customers = indexArray(crm.path("customers"));
+            Map<String, JsonNode> businesses = indexArray(companyHouse.path("businesses"));
+            Map<String, JsonNode> partiesByCustomer = indexObject(parties.path("customers"));
+            Map<String, JsonNode> transactionsByCustomer = indexObject(transactions.path("customers"));
+
+            long estimatedBytes = estimateHeapBytes(crm) + estimateHeapBytes(parties)
+                    + estimateHeapBytes(transactions) + estimateHeapBytes(companyHouse);
+
+            return new Snapshot(customers, partiesByCustomer, transactionsByCustomer, businesses,
+                    indexPartyNames(partiesByCustomer), estimatedBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load KYB reference data", e);
+        }
+    }
+
+    /**
+     * Indexes an array of records by their customer_id field, preserving file order.
+     */
+    private static Map<String, JsonNode> indexArray(JsonNode array) {
+        Map<String, JsonNode> index = new LinkedHashMap<>();
+        for (JsonNode record : array) {
+            String customerId = record.path("customer_id").asText(null);
+            if (customerId != null) {
+                index.putIfAbsent(customerId, record);
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Indexes an object keyed by customer_id.
+     */
+    private static Map<String, JsonNode> indexObject(JsonNode object) {
+        Map<String, JsonNode> index = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            index.put(field.getKey(), field.getValue());
+        }
+        return Map.copyOf(index);
+    }
+
+    /**
+     * Indexes customers by the names of their parties.
+     */
+    private static Map<String, Set<String>> indexPartyNames(Map<String, JsonNode> partiesByCustomer) {
+        Map<String, Set<String>> index = new HashMap<>();
+        for (Map.Entry<String, JsonNode> entry : partiesByCustomer.entrySet()) {
+            for (JsonNode party : entry.getValue()) {
+                String name = partyNameKey(party);
+                if (!name.isEmpty()) {
+                    index.computeIfAbsent(name, key -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+        }
+        Map<String, Set<String>> frozen = new HashMap<>();
+        index.forEach((name, customers) -> frozen.put(name, Set.copyOf(customers)));
+        return Map.copyOf(frozen);
+    }
+
+    private static String partyNameKey(JsonNode party) {
+        return party.path("name").asText("").trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Rough structural estimate of the retained size of a Jackson tree (64-bit JVM, compressed oops).
+     */
+    private static long estimateHeapBytes(JsonNode node) {
+        if (node.isObject()) {
+            long size = 64;
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                size += 32 + stringBytes(field.getKey()) + estimateHeapBytes(field.getValue());
+            }
+            return size;
+        }
+        if (node.isArray()) {
+            long size = 40;
+            for (JsonNode element : node) {
+                size += 4 + estimateHeapBytes(element);
+            }
+            return size;
+        }
+        if (node.isTextual()) {
+            return 16 + stringBytes(node.textValue());
+        }
+        return 24;
+    }
+
+    private static long stringBytes(String value) {
+        return 24 + 16 + value.length();
+    }
+
+    private record Snapshot(Map<String, JsonNode> customers,
+                            Map<String, JsonNode> parties,
+                            Map<String, JsonNode> transactions,
+                            Map<String, JsonNode> businesses,
+                            Map<String, Set<String>> customersByPartyName,
+                            long estimatedHeapBytes) {
+    }
+}
@@ -3,9 +3,9 @@ package com.mcpkyb.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
@@ -21,13 +21,13 @@ public class RiskComplianceAgent {
 
     private static final Logger logger = LoggerFactory.getLogger(RiskComplianceAgent.class);
 
-    private final OpenAiChatModel chatModel;
+    private final ChatModel chatModel;
     private final Tracer tracer;
     private final MetricsService metricsService;
     private final LLMMonitoringService llmMonitoringService;
     private final ObjectMapper objectMapper;
 
-    public RiskComplianceAgent(OpenAiChatModel chatModel, Tracer tracer, MetricsService metricsService, LLMMonitoringService llmMonitoringService, ObjectMapper objectMapper) {
+    public RiskComplianceAgent(ChatModel chatModel, Tracer tracer, MetricsService metricsService, LLMMonitoringService llmMonitoringService, ObjectMapper objectMapper) {
         this.chatModel = chatModel;
         this.tracer = tracer;
         this.metricsService = metricsService;
@@ -68,22 +68,10 @@ public class RiskComplianceAgent {
 
             logger.debug("Sending chat request to OpenAI model");
 
-        // Track LLM call
-        io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-        // Call chat() and extract content
-        ChatResponse response = chatModel.chat(request);
+        // Token usage, latency and errors are recorded by the model listener
+        ChatResponse response = llmMonitoringService.callAs("risk_compliance", () -> chatModel.chat(request));
         String result = response.aiMessage().text();
 
-        // Record successful LLM call
-        llmMonitoringService.recordSuccessfulCall(
-            llmTimer,
-            "gpt-4o-mini", // model from config
-            200, // estimated prompt tokens
-            100, // estimated completion tokens
-            1000 // estimated duration in ms
-        );
-
             // Parse the result to extract risk color for metrics
             try {
                 @SuppressWarnings("unchecked")
@@ -1,11 +1,11 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.llm.PromptBudget;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
-import dev.langchain4j.model.openai.OpenAiChatModel;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
@@ -13,13 +13,17 @@ import java.util.Map;
 @Service
 public class RiskScopeActionsAgent {
 
-    private final OpenAiChatModel chatModel;
-    private final ObjectMapper objectMapper;
+    // Search metadata and contact details say nothing about KYB risk
+    private static final String[] BUREAU_NOISE = {
+            "customer_id", "search_summary", "phone_number", "matched_phone_number", "matched_postcode"};
+
+    private final ChatModel chatModel;
+    private final PromptBudget promptBudget;
     private final LLMMonitoringService llmMonitoringService;
 
-    public RiskScopeActionsAgent(OpenAiChatModel chatModel, ObjectMapper objectMapper, LLMMonitoringService llmMonitoringService) {
+    public RiskScopeActionsAgent(ChatModel chatModel, PromptBudget promptBudget, LLMMonitoringService llmMonitoringService) {
         this.chatModel = chatModel;
-        this.objectMapper = objectMapper;
+        this.promptBudget = promptBudget;
         this.llmMonitoringService = llmMonitoringService;
     }
 
@@ -29,14 +33,13 @@ public class RiskScopeActionsAgent {
                                            Map<String, Object> transactionAggregates,
                                            JsonNode rulesConfig) {
         try {
-            // Convert maps to JSON strings for the prompt
-            String companiesHouseJson = objectMapper.writeValueAsString(companiesHouse);
-            String experianJson = objectMapper.writeValueAsString(experian);
-            String crmJson = objectMapper.writeValueAsString(internalCrm);
-            String transactionsJson = objectMapper.writeValueAsString(transactionAggregates);
-            String rulesJson = rulesConfig.toString();
-
-            String prompt = String.format("""
+            // Inputs are compacted and listed most important first, so a prompt over its budget
+            // loses bureau detail before it loses the customer's own data or the rules.
+            // Both bureau sections come from the same reference record; it is only sent once.
+            Object experianInput = experian.equals(companiesHouse)
+                    ? "(same record as companies_house)"
+                    : experian;
+            String prompt = promptBudget.render("risk_scope_actions", "", """
                 You are the **Risk Scope & Actions Agent** for an Ongoing KYB Early-Risk Radar in business banking.
 
                 Your goal:
@@ -199,39 +202,32 @@ public class RiskScopeActionsAgent {
 
                 INPUT DATA:
 
-                companies_house: %s
-
-                experian: %s
-
                 internal_crm: %s
 
                 transaction_aggregates: %s
 
                 rules_config: %s
 
-                """, companiesHouseJson, experianJson, crmJson, transactionsJson, rulesJson);
+                companies_house: %s
+
+                experian: %s
+
+                """,
+                    PromptBudget.Input.of("internal_crm", internalCrm, "twitter_id", "primary_rm"),
+                    PromptBudget.Input.of("transaction_aggregates", transactionAggregates),
+                    PromptBudget.Input.of("rules_config", rulesConfig),
+                    PromptBudget.Input.of("companies_house", companiesHouse, BUREAU_NOISE),
+                    PromptBudget.Input.of("experian", experianInput, BUREAU_NOISE));
 
             // Build ChatRequest
             ChatRequest request = ChatRequest.builder()
                     .messages(UserMessage.from(prompt))
                     .build();
 
-            // Track LLM call
-            io.micrometer.core.instrument.Timer.Sample llmTimer = llmMonitoringService.startLLMCall();
-
-            // Call chat() and extract content
-            ChatResponse response = chatModel.chat(request);
+            // Token usage, latency and errors are recorded by the model listener
+            ChatResponse response = llmMonitoringService.callAs("risk_scope_actions", () -> chatModel.chat(request));
             String result = response.aiMessage().text();
 
-            // Record successful LLM call
-            llmMonitoringService.recordSuccessfulCall(
-                llmTimer,
-                "gpt-4o-mini", // model from config
-                200, // estimated prompt tokens
-                100, // estimated completion tokens
-                1000 // estimated duration in ms
-            );
-
             return result;
 
         } catch (Exception e) {
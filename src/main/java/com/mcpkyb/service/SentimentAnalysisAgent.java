@@ -1,10 +1,9 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mcpkyb.config.TwitterApiClient;
 import com.mcpkyb.model.UserSentimentDTO;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.utils.JsonCodec;
 import edu.stanford.nlp.pipeline.CoreDocument;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,23 +24,15 @@ public class SentimentAnalysisAgent {
     @Autowired
     private StanfordCoreNLP stanfordCoreNLP;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
 
-    public Map<String, Object> analyzeSentimentByCustomerId(String customerId) throws IOException {
-        // Load CRM data and find the customer
-        JsonNode crmData = JsonLoader.loadJson("crm.json");
-        JsonNode customer = null;
-
-        for (JsonNode c : crmData.get("customers")) {
-            if (c.get("customer_id").asText().equals(customerId)) {
-                customer = c;
-                break;
-            }
-        }
+    @Autowired
+    private JsonCodec jsonCodec;
 
-        if (customer == null) {
-            throw new IOException("Customer not found: " + customerId);
-        }
+    public Map<String, Object> analyzeSentimentByCustomerId(String customerId) throws IOException {
+        // Look up the customer in the CRM snapshot
+        JsonNode customer = referenceDataStore.getCustomer(customerId);
 
         // Get the twitter_id to use as search topic
         String twitterId = customer.get("twitter_id").asText();
@@ -93,7 +84,7 @@ public class SentimentAnalysisAgent {
             return createSampleResponse(topic);
         }
 
-        JsonNode root = objectMapper.readTree(jsonResponse);
+        JsonNode root = jsonCodec.readTree(jsonResponse);
 
         List<Map<String, Object>> tweetsWithSentiment = new ArrayList<>();
         Map<String, int[]> sentimentCounts = new HashMap<>();
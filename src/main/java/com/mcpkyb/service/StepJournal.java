@@ -0,0 +1,308 @@
+package com.mcpkyb.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of completed ConductorAgent step outputs, so a run interrupted by a restart
+ * or a failure can be retried without paying again for the LLM steps that already finished.
+ *
+ * Each line of the JSONL file is either a step output ({"run_id", "step", "output", "recorded_at"})
+ * or a completion marker ({"run_id", "completed": true}). The run ID is the hash of the customer's
+ * inputs and rules, so a retry only replays outputs produced from identical inputs. A background
+ * task periodically rewrites the file with just the open runs, dropping completed runs and runs
+ * untouched for longer than kyb.journal.retention.
+ */
+@Service
+public class StepJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(StepJournal.class);
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path journalFile;
+    private final Duration retention;
+    private final Duration compactionInterval;
+
+    /** Open runs: run ID to step name to the journaled line for that step. */
+    private final Map<String, OpenRun> openRuns = new HashMap<>();
+    private BufferedWriter writer;
+    private ScheduledExecutorService compactor;
+
+    private final Counter replayedCounter;
+    private final Counter recordedCounter;
+
+    public StepJournal(ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${kyb.journal.enabled:true}") boolean enabled,
+                       @Value("${kyb.journal.file:./data/kyb-step-journal.jsonl}") String journalFile,
+                       @Value("${kyb.journal.retention:24h}") Duration retention,
+                       @Value("${kyb.journal.compaction-interval:5m}") Duration compactionInterval) {
+        this.objectMapper = objectMapper;
+        this.journalFile = journalFile == null || journalFile.isBlank() ? null : Path.of(journalFile);
+        this.enabled = enabled && this.journalFile != null;
+        this.retention = retention;
+        this.compactionInterval = compactionInterval;
+
+        this.replayedCounter = Counter.builder("kyb.journal.steps")
+                .description("KYB workflow steps journaled or replayed from the step journal")
+                .tag("outcome", "replayed")
+                .register(meterRegistry);
+        this.recordedCounter = Counter.builder("kyb.journal.steps")
+                .description("KYB workflow steps journaled or replayed from the step journal")
+                .tag("outcome", "recorded")
+                .register(meterRegistry);
+        Gauge.builder("kyb.journal.open_runs", this, StepJournal::openRunCount)
+                .description("KYB runs with journaled steps that have not completed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            load();
+            // Start from a compacted file so leftovers from before the restart don't accumulate
+            compact();
+        } catch (IOException e) {
+            logger.warn("Could not open KYB step journal {}: {}", journalFile, e.getMessage());
+            return;
+        }
+        long intervalMs = Math.max(1000, compactionInterval.toMillis());
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "step-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                logger.warn("KYB step journal compaction failed: {}", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("KYB step journal at {} - open runs: {}", journalFile, openRunCount());
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        closeWriter();
+    }
+
+    /**
+     * Result of a step journaled earlier for the same run. The output may be null for steps that
+     * legitimately produced nothing.
+     */
+    public record Entry(Map<String, Object> output, Instant recordedAt) {
+    }
+
+    /**
+     * Returns the journaled output of a step for this run, if the step completed before.
+     */
+    public Optional<Entry> replay(String runId, String step) {
+        if (!enabled || runId == null) {
+            return Optional.empty();
+        }
+        JsonNode line;
+        synchronized (this) {
+            OpenRun run = openRuns.get(runId);
+            line = run != null ? run.steps.get(step) : null;
+        }
+        if (line == null) {
+            return Optional.empty();
+        }
+        JsonNode output = line.path("output");
+        Map<String, Object> copy = output.isObject() ? objectMapper.convertValue(output, MAP_TYPE) : null;
+        replayedCounter.increment();
+        return Optional.of(new Entry(copy, Instant.parse(line.path("recorded_at").asText())));
+    }
+
+    /**
+     * True if the step has a journaled output for this run; unlike replay, does not count as a replay.
+     */
+    public boolean contains(String runId, String step) {
+        if (!enabled || runId == null) {
+            return false;
+        }
+        synchronized (this) {
+            OpenRun run = openRuns.get(runId);
+            return run != null && run.steps.containsKey(step);
+        }
+    }
+
+    /**
+     * Appends a completed step's output. Failures to write are logged and otherwise ignored: the
+     * journal only saves work, the run does not depend on it.
+     */
+    public void record(String runId, String step, Object output) {
+        if (!enabled || runId == null) {
+            return;
+        }
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("run_id", runId);
+        line.put("step", step);
+        line.set("output", objectMapper.valueToTree(output));
+        line.put("recorded_at", Instant.now().toString());
+        synchronized (this) {
+            if (append(line)) {
+                openRuns.computeIfAbsent(runId, id -> new OpenRun()).put(step, line);
+                recordedCounter.increment();
+            }
+        }
+    }
+
+    /**
+     * Marks a run as finished; its steps are no longer replayed and are dropped at the next compaction.
+     */
+    public void complete(String runId) {
+        if (!enabled || runId == null) {
+            return;
+        }
+        synchronized (this) {
+            if (openRuns.remove(runId) == null) {
+                return;
+            }
+            ObjectNode line = objectMapper.createObjectNode();
+            line.put("run_id", runId);
+            line.put("completed", true);
+            append(line);
+        }
+    }
+
+    public synchronized int openRunCount() {
+        return openRuns.size();
+    }
+
+    /**
+     * Rewrites the journal with only the open, unexpired runs.
+     */
+    synchronized void compact() throws IOException {
+        Instant expiry = Instant.now().minus(retention);
+        openRuns.values().removeIf(run -> run.lastRecordedAt.isBefore(expiry));
+
+        closeWriter();
+        Path parent = journalFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tempFile = Files.createTempFile(parent, "kyb-step-journal", ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (OpenRun run : openRuns.values()) {
+                for (JsonNode line : run.steps.values()) {
+                    out.write(objectMapper.writeValueAsString(line));
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                if (text.isBlank()) {
+                    continue;
+                }
+                JsonNode line;
+                try {
+                    line = objectMapper.readTree(text);
+                } catch (IOException e) {
+                    // Typically a line cut short by a crash mid-write
+                    skipped++;
+                    continue;
+                }
+                String runId = line.path("run_id").asText();
+                if (line.path("completed").asBoolean(false)) {
+                    openRuns.remove(runId);
+                } else if (line.hasNonNull("step") && line.hasNonNull("recorded_at")) {
+                    openRuns.computeIfAbsent(runId, id -> new OpenRun()).put(line.path("step").asText(), line);
+                }
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unreadable lines in KYB step journal {}", skipped, journalFile);
+        }
+    }
+
+    private boolean append(JsonNode line) {
+        if (writer == null) {
+            return false;
+        }
+        try {
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.newLine();
+            writer.flush();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not append to KYB step journal {}: {}", journalFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.debug("Error closing KYB step journal: {}", e.getMessage());
+        }
+        writer = null;
+    }
+
+    private static final class OpenRun {
+
+        final Map<String, JsonNode> steps = new LinkedHashMap<>();
+        Instant lastRecordedAt = Instant.EPOCH;
+
+        void put(String step, JsonNode line) {
+            steps.put(step, line);
+            Instant recordedAt = Instant.parse(line.path("recorded_at").asText());
+            if (recordedAt.isAfter(lastRecordedAt)) {
+                lastRecordedAt = recordedAt;
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.mcpkyb.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.mcpkyb.utils.JsonLoader;
+import com.mcpkyb.model.TransactionInsights;
+import com.mcpkyb.rules.CompiledRuleSet;
+import com.mcpkyb.rules.RulesRepository;
+import com.mcpkyb.utils.JsonCodec;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -20,9 +23,68 @@ public class TransactionPatternAgent {
     // Flexible formatter: supports yyyy-MM and yyyy-MM-dd
     private static final DateTimeFormatter PERIOD_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM[-dd]");
 
+    @Autowired
+    private ReferenceDataStore referenceDataStore;
+
+    @Autowired
+    private RulesRepository rulesRepository;
+
+    @Autowired
+    private JsonCodec jsonCodec;
+
+    /**
+     * JSON form of computeInsights under the active rules, for MCP tool callers.
+     */
     public String analyzeTransactions(String customerId) throws IOException {
-        JsonNode txRoot = JsonLoader.loadJson("transactions.json");
-        JsonNode txData = txRoot.path("customers").path(customerId);
+        TransactionInsights insights = computeInsights(customerId, rulesRepository.current().compiled());
+        return jsonCodec.write(Map.of("transaction_insights", insights));
+    }
+
+    /**
+     * Analyzes the customer's transactions against a specific rule set, so a workflow run can use
+     * the same rules version for every step.
+     */
+    public TransactionInsights computeInsights(String customerId, CompiledRuleSet rules) throws IOException {
+        TransactionMetrics metrics = computeMetrics(customerId);
+        List<JsonNode> monthlyStats = metrics.monthlyStats();
+        JsonNode latest = monthlyStats.get(monthlyStats.size() - 1);
+        double intlChangePct = metrics.intlChangePct();
+        double highRiskSharePct = metrics.highRiskSharePct();
+        double cashRatioPct = metrics.cashRatioPct();
+
+        double intlSpikeThreshold = rules.intlSpikeThresholdPct();
+        double highRiskShareThreshold = rules.highRiskShareThresholdPct();
+        double cashDepositThreshold = rules.cashRatioThresholdPct();
+
+        List<String> candidateTriggers = new ArrayList<>();
+        if (intlChangePct > intlSpikeThreshold) {
+            candidateTriggers.add("TRIG_INTL_SPIKE");
+        }
+        if (highRiskSharePct > highRiskShareThreshold) {
+            candidateTriggers.add("TRIG_HIGH_RISK_COUNTRY");
+        }
+        if (cashRatioPct > cashDepositThreshold) {
+            candidateTriggers.add("TRIG_CASH_HEAVY");
+        }
+
+        String summary = buildSummary(monthlyStats, intlChangePct, highRiskSharePct, cashRatioPct, candidateTriggers);
+
+        TransactionInsights.SupportingMetrics supportingMetrics = new TransactionInsights.SupportingMetrics(
+                Math.round(intlChangePct),
+                Math.round(highRiskSharePct),
+                Math.round(cashRatioPct),
+                monthlyStats.size(),
+                latest.path("period").asText());
+
+        return new TransactionInsights(summary, List.copyOf(candidateTriggers), supportingMetrics);
+    }
+
+    /**
+     * Computes the raw month-on-month metrics the risk triggers are evaluated on, without building
+     * the narrative insights. Used directly by whole-portfolio scoring.
+     */
+    public TransactionMetrics computeMetrics(String customerId) throws IOException {
+        JsonNode txData = referenceDataStore.getTransactions(customerId);
 
         if (txData.isMissingNode()) {
             throw new IOException("No transaction data found for " + customerId);
@@ -33,12 +95,6 @@ public class TransactionPatternAgent {
             throw new IOException("Insufficient transaction history for " + customerId);
         }
 
-        JsonNode rules = JsonLoader.loadJson("rules.json");
-        JsonNode thresholds = rules.path("risk_thresholds");
-        double intlSpikeThreshold = thresholds.path("intl_outward_mom_spike_pct").asDouble(100);
-        double highRiskShareThreshold = thresholds.path("high_risk_country_volume_ratio").asDouble(0.05) * 100;
-        double cashDepositThreshold = thresholds.path("cash_deposit_to_turnover_ratio").asDouble(0.30) * 100;
-
         JsonNode latest = monthlyStats.get(monthlyStats.size() - 1);
         JsonNode previous = monthlyStats.get(monthlyStats.size() - 2);
 
@@ -53,34 +109,7 @@ public class TransactionPatternAgent {
         double cashDeposits = latest.path("cash_deposits_amount").asDouble(0);
         double cashRatioPct = latestTotalOut > 0 ? (cashDeposits / latestTotalOut) * 100 : 0;
 
-        List<String> candidateTriggers = new ArrayList<>();
-        if (intlChangePct > intlSpikeThreshold) {
-            candidateTriggers.add("TRIG_INTL_SPIKE");
-        }
-        if (highRiskSharePct > highRiskShareThreshold) {
-            candidateTriggers.add("TRIG_HIGH_RISK_COUNTRY");
-        }
-        if (cashRatioPct > cashDepositThreshold) {
-            candidateTriggers.add("TRIG_CASH_HEAVY");
-        }
-
-        String summary = buildSummary(monthlyStats, intlChangePct, highRiskSharePct, cashRatioPct, candidateTriggers);
-
-        Map<String, Object> supportingMetrics = new HashMap<>();
-        supportingMetrics.put("intl_outward_change_pct", Math.round(intlChangePct));
-        supportingMetrics.put("high_risk_country_share_pct", Math.round(highRiskSharePct));
-        supportingMetrics.put("cash_deposit_ratio_pct", Math.round(cashRatioPct));
-        supportingMetrics.put("period_covered_months", monthlyStats.size());
-        supportingMetrics.put("latest_period", latest.path("period").asText());
-
-        Map<String, Object> insights = new HashMap<>();
-        insights.put("summary", summary);
-        insights.put("candidate_triggers", candidateTriggers);
-        insights.put("supporting_metrics", supportingMetrics);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("transaction_insights", insights);
-        return new ObjectMapper().writeValueAsString(response);
+        return new TransactionMetrics(monthlyStats, intlChangePct, highRiskSharePct, cashRatioPct);
     }
 
     /**
@@ -154,4 +183,13 @@ public class TransactionPatternAgent {
         }
         return String.format("%.0f", amount);
     }
+
+    /**
+     * Month-on-month transaction metrics for a customer, over at most the last six months.
+     */
+    public record TransactionMetrics(List<JsonNode> monthlyStats,
+                                     double intlChangePct,
+                                     double highRiskSharePct,
+                                     double cashRatioPct) {
+    }
 }
\ No newline at end of file
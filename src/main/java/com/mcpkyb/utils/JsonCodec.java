@@ -0,0 +1,125 @@
+package com.mcpkyb.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.mcpkyb.jobs.KybJob;
+import com.mcpkyb.mcp.model.McpMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Shared JSON codec over the application ObjectMapper.
+ *
+ * Creating an ObjectMapper per call throws away its serializer and deserializer caches, so every
+ * call pays for introspection again. This codec holds readers and writers built once for the types
+ * the request path reads and writes most: KYB result maps (result cache, single-flight, NDJSON batch
+ * lines), trees, MCP messages, async job records and pretty-printed prompt payloads. Readers and
+ * writers bound to a type resolve its (de)serializer up front instead of on every call.
+ * ObjectReader and ObjectWriter are immutable and safe to share between threads.
+ *
+ * JsonCodecBenchmark (mvn -Pjmh) compares this against a new ObjectMapper per call.
+ */
+@Component
+public class JsonCodec {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader mapReader;
+    private final ObjectWriter mapWriter;
+    private final ObjectReader treeReader;
+    private final ObjectReader messageReader;
+    private final ObjectWriter messageWriter;
+    private final ObjectReader jobReader;
+    private final ObjectWriter jobWriter;
+    private final ObjectWriter writer;
+    private final ObjectWriter prettyWriter;
+
+    public JsonCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.mapReader = objectMapper.readerFor(MAP_TYPE);
+        this.mapWriter = objectMapper.writerFor(MAP_TYPE);
+        this.treeReader = objectMapper.reader();
+        this.messageReader = objectMapper.readerFor(McpMessage.class);
+        this.messageWriter = objectMapper.writerFor(McpMessage.class);
+        this.jobReader = objectMapper.readerFor(KybJob.class);
+        this.jobWriter = objectMapper.writerFor(KybJob.class);
+        this.writer = objectMapper.writer();
+        this.prettyWriter = objectMapper.writerWithDefaultPrettyPrinter();
+    }
+
+    public ObjectMapper mapper() {
+        return objectMapper;
+    }
+
+    public Map<String, Object> readMap(String json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    public Map<String, Object> readMap(byte[] json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    public String writeMap(Map<String, Object> value) throws IOException {
+        return mapWriter.writeValueAsString(value);
+    }
+
+    public byte[] writeMapBytes(Map<String, Object> value) throws IOException {
+        return mapWriter.writeValueAsBytes(value);
+    }
+
+    public JsonNode readTree(String json) throws IOException {
+        return treeReader.readTree(json);
+    }
+
+    public JsonNode readTree(InputStream json) throws IOException {
+        return treeReader.readTree(json);
+    }
+
+    public McpMessage readMessage(String json) throws IOException {
+        return messageReader.readValue(json);
+    }
+
+    public String writeMessage(McpMessage message) throws IOException {
+        return messageWriter.writeValueAsString(message);
+    }
+
+    public KybJob readJob(Path file) throws IOException {
+        return jobReader.readValue(file.toFile());
+    }
+
+    public void writeJob(Path file, KybJob job) throws IOException {
+        jobWriter.writeValue(file.toFile(), job);
+    }
+
+    public String write(Object value) throws IOException {
+        return writer.writeValueAsString(value);
+    }
+
+    public byte[] writeBytes(Object value) throws IOException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    public String writePretty(Object value) throws IOException {
+        return prettyWriter.writeValueAsString(value);
+    }
+
+    /**
+     * Copies a tree or POJO into a fresh mutable map, without going through JSON text.
+     */
+    public Map<String, Object> toMap(Object value) {
+        return objectMapper.convertValue(value, MAP_TYPE);
+    }
+
+    public ArrayNode createArrayNode() {
+        return objectMapper.createArrayNode();
+    }
+}
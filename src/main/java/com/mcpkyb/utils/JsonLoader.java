@@ -2,12 +2,21 @@ package com.mcpkyb.utils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.springframework.core.io.ClassPathResource;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class JsonLoader {
+
+    // Bundled datasets (reference data, rules, workflow) are read once when their owners load them,
+    // off the request path, so a plain reader shared by every call is enough; JsonCodec serves the
+    // request path
+    private static final ObjectReader READER = new ObjectMapper().reader();
+
     public static JsonNode loadJson(String fileName) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readTree(new ClassPathResource(fileName).getInputStream());
+        try (InputStream in = new ClassPathResource(fileName).getInputStream()) {
+            return READER.readTree(in);
+        }
     }
 }
\ No newline at end of file
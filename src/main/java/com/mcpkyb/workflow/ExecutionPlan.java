@@ -0,0 +1,224 @@
+package com.mcpkyb.workflow;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A workflow.json definition compiled into steps in dependency order.
+ *
+ * Each step names the agent it runs, the steps whose outputs it needs (depends_on), optional
+ * conditions on those outputs (when) and a timeout. Steps are listed in topological order, so a
+ * step's dependencies always come before it; the engine starts each one as soon as its own
+ * dependencies have finished.
+ */
+public final class ExecutionPlan {
+
+    private static final long DEFAULT_TIMEOUT_MS = 120_000;
+
+    private final int version;
+    private final List<StepPlan> steps;
+    private final Map<String, StepPlan> stepsByName;
+
+    private ExecutionPlan(int version, List<StepPlan> steps) {
+        this.version = version;
+        this.steps = List.copyOf(steps);
+        Map<String, StepPlan> byName = new LinkedHashMap<>();
+        for (StepPlan step : steps) {
+            byName.put(step.name(), step);
+        }
+        this.stepsByName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * One step of the plan. dependsOn only names steps that come earlier in the plan.
+     */
+    public record StepPlan(String name,
+                           List<String> dependsOn,
+                           List<Condition> conditions,
+                           Duration timeout,
+                           boolean journaled) {
+
+        /**
+         * True if every condition holds for the given dependency outputs.
+         */
+        public boolean shouldRun(Map<String, Map<String, Object>> inputs) {
+            for (Condition condition : conditions) {
+                if (!condition.test(inputs.get(condition.step()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Test on one field of a dependency's output: equals a value, or is (not) in a set of values.
+     * Values are compared as text. A skipped dependency fails every condition.
+     */
+    public record Condition(String step, String field, String equalsValue, Set<String> in, Set<String> notIn) {
+
+        boolean test(Map<String, Object> output) {
+            if (output == null) {
+                return false;
+            }
+            String value = String.valueOf(output.get(field));
+            if (equalsValue != null && !equalsValue.equals(value)) {
+                return false;
+            }
+            if (in != null && !in.contains(value)) {
+                return false;
+            }
+            return notIn == null || !notIn.contains(value);
+        }
+    }
+
+    public static ExecutionPlan compile(JsonNode definition, Set<String> knownSteps) {
+        List<String> problems = validate(definition, knownSteps);
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Invalid workflow definition: " + problems);
+        }
+
+        long defaultTimeoutMs = definition.path("default_timeout_ms").asLong(DEFAULT_TIMEOUT_MS);
+        Map<String, StepPlan> declared = new LinkedHashMap<>();
+        for (JsonNode step : definition.path("steps")) {
+            String name = step.path("agent").asText();
+            List<String> dependsOn = new ArrayList<>();
+            step.path("depends_on").forEach(dependency -> dependsOn.add(dependency.asText()));
+            List<Condition> conditions = new ArrayList<>();
+            for (JsonNode condition : step.path("when")) {
+                conditions.add(new Condition(
+                        condition.path("step").asText(),
+                        condition.path("field").asText(),
+                        condition.has("equals") ? condition.get("equals").asText() : null,
+                        textSet(condition.get("in")),
+                        textSet(condition.get("not_in"))));
+            }
+            Duration timeout = Duration.ofMillis(step.path("timeout_ms").asLong(defaultTimeoutMs));
+            declared.put(name, new StepPlan(name, List.copyOf(dependsOn), List.copyOf(conditions), timeout,
+                    step.path("journaled").asBoolean(false)));
+        }
+        return new ExecutionPlan(definition.path("version").asInt(1), topologicalOrder(declared));
+    }
+
+    /**
+     * Checks a workflow.json document, returning one message per problem (empty if usable).
+     */
+    public static List<String> validate(JsonNode definition, Set<String> knownSteps) {
+        List<String> problems = new ArrayList<>();
+        if (definition == null || !definition.path("steps").isArray() || definition.path("steps").isEmpty()) {
+            problems.add("steps must be a non-empty array");
+            return problems;
+        }
+
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        for (JsonNode step : definition.path("steps")) {
+            String name = step.path("agent").asText("");
+            if (name.isEmpty()) {
+                problems.add("every step needs an agent");
+                continue;
+            }
+            if (!knownSteps.contains(name)) {
+                problems.add("unknown agent " + name + " (known: " + new TreeSet<>(knownSteps) + ")");
+            }
+            if (dependencies.containsKey(name)) {
+                problems.add(name + " is listed more than once");
+            }
+            if (step.has("timeout_ms") && step.path("timeout_ms").asLong(0) <= 0) {
+                problems.add(name + ".timeout_ms must be a positive number");
+            }
+            Set<String> dependsOn = new HashSet<>();
+            step.path("depends_on").forEach(dependency -> dependsOn.add(dependency.asText()));
+            dependencies.put(name, dependsOn);
+            for (JsonNode condition : step.path("when")) {
+                String conditionStep = condition.path("step").asText("");
+                if (!dependsOn.contains(conditionStep)) {
+                    problems.add(name + " has a condition on " + conditionStep + ", which is not in its depends_on");
+                }
+                if (condition.path("field").asText("").isEmpty()) {
+                    problems.add(name + " has a condition without a field");
+                }
+                if (!condition.has("equals") && !condition.has("in") && !condition.has("not_in")) {
+                    problems.add(name + " has a condition without equals, in or not_in");
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                if (!dependencies.containsKey(dependency)) {
+                    problems.add(entry.getKey() + " depends on " + dependency + ", which is not a step in the workflow");
+                }
+            }
+        }
+        if (problems.isEmpty() && hasCycle(dependencies)) {
+            problems.add("depends_on contains a cycle");
+        }
+        return problems;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public List<StepPlan> steps() {
+        return steps;
+    }
+
+    public boolean contains(String step) {
+        return stepsByName.containsKey(step);
+    }
+
+    public StepPlan step(String step) {
+        return stepsByName.get(step);
+    }
+
+    /**
+     * Orders steps so dependencies come first, keeping the declared order among independent steps.
+     */
+    private static List<StepPlan> topologicalOrder(Map<String, StepPlan> declared) {
+        List<StepPlan> ordered = new ArrayList<>(declared.size());
+        Set<String> placed = new HashSet<>();
+        while (ordered.size() < declared.size()) {
+            for (StepPlan step : declared.values()) {
+                if (!placed.contains(step.name()) && placed.containsAll(step.dependsOn())) {
+                    ordered.add(step);
+                    placed.add(step.name());
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private static boolean hasCycle(Map<String, Set<String>> dependencies) {
+        Set<String> placed = new HashSet<>();
+        boolean progress = true;
+        while (progress && placed.size() < dependencies.size()) {
+            progress = false;
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                if (!placed.contains(entry.getKey()) && placed.containsAll(entry.getValue())) {
+                    placed.add(entry.getKey());
+                    progress = true;
+                }
+            }
+        }
+        return placed.size() < dependencies.size();
+    }
+
+    private static Set<String> textSet(JsonNode values) {
+        if (values == null || !values.isArray()) {
+            return null;
+        }
+        Set<String> set = new HashSet<>();
+        values.forEach(value -> set.add(value.asText()));
+        return set;
+    }
+}
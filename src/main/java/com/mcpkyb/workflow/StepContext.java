@@ -0,0 +1,91 @@
+package com.mcpkyb.workflow;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Outputs of a step's dependencies, as seen by the step while it runs.
+ */
+public final class StepContext {
+
+    private final String step;
+    private final ExecutionPlan plan;
+    private final Map<String, Object> inputs;
+    private final Instant deadline;
+    private final Instant stepDeadline;
+
+    StepContext(String step, ExecutionPlan plan, Map<String, Object> inputs, Instant deadline) {
+        this(step, plan, inputs, deadline, null);
+    }
+
+    private StepContext(String step, ExecutionPlan plan, Map<String, Object> inputs,
+                        Instant deadline, Instant stepDeadline) {
+        this.step = step;
+        this.plan = plan;
+        this.inputs = inputs;
+        this.deadline = deadline;
+        this.stepDeadline = stepDeadline;
+    }
+
+    /**
+     * The same context for a step that is given budget from now before it falls back.
+     */
+    StepContext withStepBudget(Duration budget) {
+        return new StepContext(step, plan, inputs, deadline, Instant.now().plus(budget));
+    }
+
+    /**
+     * When the whole run must have finished, or null for no deadline.
+     */
+    public Instant deadline() {
+        return deadline;
+    }
+
+    /**
+     * Time left until the run deadline (never negative), or null for no deadline.
+     */
+    public Duration remaining() {
+        if (deadline == null) {
+            return null;
+        }
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Time left before this step misses its budget and the run stops waiting for it (never
+     * negative), or null if it is unbounded. Steps that block on I/O of their own should give up by
+     * then, since their result can no longer be used.
+     */
+    public Duration stepRemaining() {
+        Instant until = stepDeadline;
+        if (until == null || (deadline != null && deadline.isBefore(until))) {
+            until = deadline;
+        }
+        if (until == null) {
+            return null;
+        }
+        Duration remaining = Duration.between(Instant.now(), until);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Output of a dependency as the dependency returned it (a map or a typed value; replayed outputs
+     * are maps), or null if it was skipped or produced nothing. Steps that the active
+     * workflow does not include also read as null, so a step keeps working when an optional
+     * upstream agent is removed from workflow.json.
+     *
+     * @throws IllegalStateException if the step is in the workflow but not a declared dependency,
+     *                               since its output may not be ready yet
+     */
+    public Object input(String dependency) {
+        if (inputs.containsKey(dependency)) {
+            return inputs.get(dependency);
+        }
+        if (plan.contains(dependency)) {
+            throw new IllegalStateException(step + " reads " + dependency + " but does not depend on it in the workflow");
+        }
+        return null;
+    }
+}
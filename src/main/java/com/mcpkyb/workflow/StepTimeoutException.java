@@ -0,0 +1,22 @@
+package com.mcpkyb.workflow;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown (as the cause of the step's failed future) when a workflow step exceeds its time budget
+ * and has no fallback.
+ */
+public class StepTimeoutException extends IOException {
+
+    private final String step;
+
+    public StepTimeoutException(String step, Duration timeout) {
+        super(step + " timed out after " + timeout.toMillis() + "ms");
+        this.step = step;
+    }
+
+    public String getStep() {
+        return step;
+    }
+}
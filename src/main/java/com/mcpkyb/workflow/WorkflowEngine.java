@@ -0,0 +1,317 @@
+package com.mcpkyb.workflow;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcpkyb.service.StepJournal;
+import com.mcpkyb.utils.JsonLoader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads workflow.json and executes compiled plans.
+ *
+ * Every step is started as soon as the steps it depends on have finished, so independent steps
+ * run in parallel on the step executor. Steps whose conditions do not hold are skipped without
+ * calling their agent. Journaled steps are replayed from the StepJournal when the same run was
+ * interrupted earlier.
+ *
+ * Each step gets the smaller of its own timeout and the time left before the run deadline. A step
+ * that misses its budget is answered by its deterministic fallback, if it has one, so the run
+ * finishes on time with a partial result; the abandoned call keeps running in the background and,
+ * for journaled steps, its output is still journaled for the next attempt.
+ *
+ * Steps the caller names as speculative are started at the beginning of the run, alongside the
+ * steps they depend on, instead of waiting for them. Once the dependencies finish, the speculative
+ * call is used if the step's conditions hold (a hit) and discarded otherwise (wasted). A
+ * speculative step cannot read its dependencies' outputs, since they don't exist yet when it starts.
+ */
+@Service
+public class WorkflowEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowEngine.class);
+
+    private static final String CLASSPATH_WORKFLOW = "workflow.json";
+    private static final TypeReference<Map<String, Object>> FIELDS_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final StepJournal stepJournal;
+    private final ExecutorService executor;
+    private final Path workflowPath;
+    private final MeterRegistry meterRegistry;
+
+    public WorkflowEngine(ObjectMapper objectMapper,
+                          StepJournal stepJournal,
+                          @Qualifier("kybStepExecutor") ExecutorService executor,
+                          MeterRegistry meterRegistry,
+                          @Value("${kyb.workflow.path:}") String workflowPath) {
+        this.objectMapper = objectMapper;
+        this.stepJournal = stepJournal;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.workflowPath = workflowPath == null || workflowPath.isBlank() ? null : Path.of(workflowPath);
+    }
+
+    /**
+     * Loads and compiles the configured workflow (kyb.workflow.path, else the bundled workflow.json)
+     * against the step implementations the caller provides.
+     *
+     * @throws IllegalStateException if the definition is invalid
+     */
+    public ExecutionPlan loadPlan(Set<String> knownSteps) {
+        try {
+            JsonNode definition;
+            String source;
+            if (workflowPath != null && Files.exists(workflowPath)) {
+                definition = objectMapper.readTree(workflowPath.toFile());
+                source = workflowPath.toString();
+            } else {
+                if (workflowPath != null) {
+                    logger.warn("Workflow file {} not found, using bundled {}", workflowPath, CLASSPATH_WORKFLOW);
+                }
+                definition = JsonLoader.loadJson(CLASSPATH_WORKFLOW);
+                source = "classpath:" + CLASSPATH_WORKFLOW;
+            }
+            try {
+                ExecutionPlan plan = ExecutionPlan.compile(definition, knownSteps);
+                logger.info("Workflow version {} loaded from {} - steps: {}", plan.version(), source,
+                        plan.steps().stream().map(ExecutionPlan.StepPlan::name).toList());
+                return plan;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage() + " in " + source, e);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load KYB workflow", e);
+        }
+    }
+
+    /**
+     * Starts every step of the plan. runId keys the step journal (null disables replay); fallbacks
+     * answer steps that miss their budget; speculativeSteps are started without waiting for their
+     * dependencies; deadline bounds the whole run (null for none).
+     */
+    public WorkflowRun start(ExecutionPlan plan,
+                             Map<String, WorkflowStep> implementations,
+                             Map<String, WorkflowStep> fallbacks,
+                             Set<String> speculativeSteps,
+                             String runId,
+                             Instant deadline) {
+        WorkflowRun run = new WorkflowRun(plan);
+        for (ExecutionPlan.StepPlan step : plan.steps()) {
+            CompletableFuture<Object> speculation = speculativeSteps.contains(step.name())
+                    ? speculate(run, plan, step, implementations.get(step.name()), runId, deadline)
+                    : null;
+            // Dependencies come earlier in the plan, so their futures are all registered by now
+            Map<String, CompletableFuture<Object>> dependencyFutures = new HashMap<>();
+            for (String dependency : step.dependsOn()) {
+                dependencyFutures.put(dependency, run.future(dependency));
+            }
+            CompletableFuture<Object> future = CompletableFuture
+                    .allOf(dependencyFutures.values().toArray(CompletableFuture[]::new))
+                    .thenCompose(ignored -> {
+                        Map<String, Object> inputs = new HashMap<>();
+                        dependencyFutures.forEach((dependency, dependencyFuture) ->
+                                inputs.put(dependency, dependencyFuture.join()));
+                        if (!step.shouldRun(conditionInputs(step, inputs))) {
+                            Map<String, Object> timing = new HashMap<>();
+                            timing.put("skipped", true);
+                            if (speculation != null) {
+                                speculation.cancel(false);
+                                timing.put("speculation", "wasted");
+                                speculationCounter(step.name(), "wasted").increment();
+                            }
+                            run.recordTiming(step.name(), timing);
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        if (speculation != null) {
+                            Map<String, Object> timing = new HashMap<>();
+                            timing.put("speculation", "hit");
+                            run.recordTiming(step.name(), timing);
+                            speculationCounter(step.name(), "hit").increment();
+                        }
+                        return runStep(run, step, implementations.get(step.name()), fallbacks.get(step.name()),
+                                new StepContext(step.name(), plan, inputs, deadline), runId, speculation);
+                    });
+            run.register(step.name(), future);
+        }
+        return run;
+    }
+
+    /**
+     * Starts a step ahead of its dependencies, unless it is in the journal already or has none.
+     */
+    private CompletableFuture<Object> speculate(WorkflowRun run,
+                                                             ExecutionPlan plan,
+                                                             ExecutionPlan.StepPlan step,
+                                                             WorkflowStep implementation,
+                                                             String runId,
+                                                             Instant deadline) {
+        if (step.dependsOn().isEmpty() || (step.journaled() && stepJournal.contains(runId, step.name()))) {
+            return null;
+        }
+        StepContext context = new StepContext(step.name(), plan, Map.of(), deadline).withStepBudget(step.timeout());
+        return CompletableFuture.supplyAsync(() -> execute(run, step, implementation, context, runId), executor);
+    }
+
+    private CompletableFuture<Object> runStep(WorkflowRun run,
+                                                           ExecutionPlan.StepPlan step,
+                                                           WorkflowStep implementation,
+                                                           WorkflowStep fallback,
+                                                           StepContext context,
+                                                           String runId,
+                                                           CompletableFuture<Object> speculation) {
+        if (speculation == null && step.journaled()) {
+            Optional<StepJournal.Entry> journaled = stepJournal.replay(runId, step.name());
+            if (journaled.isPresent()) {
+                Map<String, Object> timing = new HashMap<>();
+                timing.put("replayed", true);
+                timing.put("recorded_at", journaled.get().recordedAt().toString());
+                run.recordTiming(step.name(), timing);
+                run.markExecuted(step.name());
+                return CompletableFuture.completedFuture(journaled.get().output());
+            }
+        }
+
+        Duration budget = step.timeout();
+        Duration remaining = context.remaining();
+        if (remaining != null && remaining.compareTo(budget) < 0) {
+            budget = remaining;
+        }
+        if (budget.isZero()) {
+            // Deadline already passed: don't start a call nobody will wait for
+            return fallBack(run, step, fallback, context, budget);
+        }
+
+        Duration stepBudget = budget;
+        StepContext stepContext = context.withStepBudget(stepBudget);
+        run.markExecuted(step.name());
+        CompletableFuture<Object> call = speculation != null
+                ? speculation.copy()
+                : CompletableFuture.supplyAsync(() -> execute(run, step, implementation, stepContext, runId), executor);
+        return call
+                .orTimeout(stepBudget.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    // A call rejected because the budget ran out (e.g. while queued for an LLM slot)
+                    // missed it just the same
+                    boolean missedBudget = cause instanceof TimeoutException
+                            || Duration.ZERO.equals(stepContext.stepRemaining());
+                    return missedBudget
+                            ? fallBack(run, step, fallback, context, stepBudget)
+                            : CompletableFuture.failedFuture(error);
+                });
+    }
+
+    /**
+     * Runs a step's implementation, journaling its output and recording its timing.
+     */
+    private Object execute(WorkflowRun run,
+                                        ExecutionPlan.StepPlan step,
+                                        WorkflowStep implementation,
+                                        StepContext context,
+                                        String runId) {
+        Instant startedAt = Instant.now();
+        try {
+            Object output = implementation.execute(context);
+            if (step.journaled()) {
+                stepJournal.record(runId, step.name(), output);
+            }
+            return output;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            Instant endedAt = Instant.now();
+            Map<String, Object> timing = new HashMap<>();
+            timing.put("started_at", startedAt.toString());
+            timing.put("ended_at", endedAt.toString());
+            timing.put("duration_ms", Duration.between(startedAt, endedAt).toMillis());
+            run.recordTiming(step.name(), timing);
+        }
+    }
+
+    /**
+     * Dependency outputs in the map form the step's conditions test. Typed outputs are converted to
+     * their JSON fields, and only for the steps a condition reads.
+     */
+    private Map<String, Map<String, Object>> conditionInputs(ExecutionPlan.StepPlan step, Map<String, Object> inputs) {
+        Map<String, Map<String, Object>> fields = new HashMap<>();
+        for (ExecutionPlan.Condition condition : step.conditions()) {
+            Object output = inputs.get(condition.step());
+            if (output instanceof Map<?, ?> map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> outputFields = (Map<String, Object>) map;
+                fields.put(condition.step(), outputFields);
+            } else if (output != null) {
+                fields.put(condition.step(), objectMapper.convertValue(output, FIELDS_TYPE));
+            }
+        }
+        return fields;
+    }
+
+    private Counter speculationCounter(String step, String outcome) {
+        return Counter.builder("kyb.workflow.speculation")
+                .description("Speculatively started workflow steps whose result was used (hit) or discarded (wasted)")
+                .tag("step", step)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers a step that missed its budget from its fallback, or fails it with StepTimeoutException
+     * when it has none (or the fallback itself fails).
+     */
+    private CompletableFuture<Object> fallBack(WorkflowRun run,
+                                                            ExecutionPlan.StepPlan step,
+                                                            WorkflowStep fallback,
+                                                            StepContext context,
+                                                            Duration budget) {
+        StepTimeoutException timeout = new StepTimeoutException(step.name(), budget);
+        if (fallback == null) {
+            return CompletableFuture.failedFuture(new CompletionException(timeout));
+        }
+        try {
+            Object output = fallback.execute(context);
+            run.markFallback(step.name());
+            Map<String, Object> timing = new HashMap<>();
+            timing.put("timed_out", true);
+            timing.put("fallback", true);
+            timing.put("budget_ms", budget.toMillis());
+            run.recordTiming(step.name(), timing);
+            Counter.builder("kyb.workflow.step_fallbacks")
+                    .description("Workflow steps answered by their fallback after missing their time budget")
+                    .tag("step", step.name())
+                    .register(meterRegistry)
+                    .increment();
+            logger.warn("{} missed its {}ms budget, using fallback", step.name(), budget.toMillis());
+            return CompletableFuture.completedFuture(output);
+        } catch (Exception e) {
+            timeout.addSuppressed(e);
+            return CompletableFuture.failedFuture(new CompletionException(timeout));
+        }
+    }
+}
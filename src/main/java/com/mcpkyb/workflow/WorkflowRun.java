@@ -0,0 +1,95 @@
+package com.mcpkyb.workflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A workflow execution in progress: one future per step, completing with the step's output (null
+ * when the step was skipped), plus per-step timings for the audit trail and the steps whose output
+ * came from a fallback because they missed their time budget.
+ */
+public final class WorkflowRun {
+
+    private final ExecutionPlan plan;
+    // Registered while the run starts and read from steps already running on executor threads
+    private final Map<String, CompletableFuture<Object>> futures = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> stepTimings = new ConcurrentHashMap<>();
+    private final Set<String> executed = ConcurrentHashMap.newKeySet();
+    private final Set<String> fellBack = ConcurrentHashMap.newKeySet();
+
+    WorkflowRun(ExecutionPlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Future for a step's output. Steps the workflow does not include complete immediately with null.
+     */
+    public CompletableFuture<Object> future(String step) {
+        CompletableFuture<Object> future = futures.get(step);
+        return future != null ? future : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Steps that ran or were replayed from the journal (not skipped), in plan order.
+     */
+    public List<String> executedSteps() {
+        List<String> steps = new ArrayList<>();
+        for (ExecutionPlan.StepPlan step : plan.steps()) {
+            if (executed.contains(step.name())) {
+                steps.add(step.name());
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Steps that missed their time budget and were answered by their fallback, in plan order. A
+     * run with any such step produced a partial result.
+     */
+    public List<String> fallbackSteps() {
+        List<String> steps = new ArrayList<>();
+        for (ExecutionPlan.StepPlan step : plan.steps()) {
+            if (fellBack.contains(step.name())) {
+                steps.add(step.name());
+            }
+        }
+        return steps;
+    }
+
+    public Map<String, Map<String, Object>> stepTimings() {
+        return new HashMap<>(stepTimings);
+    }
+
+    public int planVersion() {
+        return plan.version();
+    }
+
+    void register(String step, CompletableFuture<Object> future) {
+        futures.put(step, future);
+    }
+
+    void markExecuted(String step) {
+        executed.add(step);
+    }
+
+    void markFallback(String step) {
+        fellBack.add(step);
+    }
+
+    /**
+     * Merges timing fields for a step; a timed-out step gets its fallback fields first and its
+     * start/end times when the abandoned call eventually returns.
+     */
+    void recordTiming(String step, Map<String, Object> timing) {
+        stepTimings.merge(step, timing, (existing, added) -> {
+            Map<String, Object> merged = new HashMap<>(existing);
+            merged.putAll(added);
+            return merged;
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.mcpkyb.workflow;
+
+/**
+ * Implementation of one named step of the KYB workflow. Reads the outputs of the steps it depends
+ * on from the context and returns its own output (null if it has nothing to report): a map, or a
+ * typed value such as a record that serializes to the same JSON shape. Outputs replayed from the
+ * step journal and read by workflow conditions are in their JSON map form.
+ */
+@FunctionalInterface
+public interface WorkflowStep {
+
+    Object execute(StepContext context) throws Exception;
+}